@@ -0,0 +1,110 @@
+package bst;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of BST with every balancing policy, on random, sorted and
+ * duplicate heavy data.  An invocation works on all the size values, so
+ * the score is the time to add, remove or traverse all of them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class BSTBenchmarks {
+    @Param({ "RANDOM", "SORTED", "DUPLICATES" })
+    public Datasets.Shape shape;
+
+    @Param({ "NONE", "AVL", "SPLAY" })
+    public BST.Balancing balancing;
+
+    @Param("10000")
+    public int size;
+
+    private Integer[] values;
+    /** The tree the traversals read, built once. */
+    private BST<Integer> built;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        values = Datasets.boxed(Datasets.generate(shape, size, Datasets.SEED));
+        built = fill(new BST<Integer>(balancing), values);
+    }
+
+    /**
+     * An empty tree for every invocation.
+     */
+    @State(Scope.Thread)
+    public static class Empty {
+        BST<Integer> tree;
+
+        @Setup(Level.Invocation)
+        public void create(BSTBenchmarks data) {
+            tree = new BST<Integer>(data.balancing);
+        }
+    }
+
+    /**
+     * A tree holding all the values for every invocation.
+     */
+    @State(Scope.Thread)
+    public static class Filled {
+        BST<Integer> tree;
+
+        @Setup(Level.Invocation)
+        public void create(BSTBenchmarks data) {
+            tree = fill(new BST<Integer>(data.balancing), data.values);
+        }
+    }
+
+    @Benchmark
+    public BST<Integer> add(Empty empty) {
+        return fill(empty.tree, values);
+    }
+
+    @Benchmark
+    public BST<Integer> remove(Filled filled) {
+        BST<Integer> tree = filled.tree;
+        for (Integer value : values) {
+            tree.remove(value);
+        }
+        return tree;
+    }
+
+    @Benchmark
+    public LinkedList<Integer> elementsPreOrder() {
+        return built.elements(BST.Traversal.PRE_ORDER);
+    }
+
+    @Benchmark
+    public LinkedList<Integer> elementsInOrder() {
+        return built.elements(BST.Traversal.IN_ORDER);
+    }
+
+    @Benchmark
+    public LinkedList<Integer> elementsPostOrder() {
+        return built.elements(BST.Traversal.POST_ORDER);
+    }
+
+    static BST<Integer> fill(BST<Integer> tree, Integer[] values) {
+        for (Integer value : values) {
+            tree.add(value);
+        }
+        return tree;
+    }
+}
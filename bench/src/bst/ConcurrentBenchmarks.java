@@ -0,0 +1,167 @@
+package bst;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the trees shared by many threads: ConcurrentBST against a
+ * BST behind one lock and a BST behind a read-write lock.
+ *
+ * Every thread runs a random mix of contains, add and remove on keys below
+ * size; reads is the percentage of contains, the rest is split evenly
+ * between add and remove so the size stays about half of the keys.  The
+ * number of threads is set with the -t option of JMH, the score is the
+ * operations of all the threads together per second, so a tree which
+ * scales shows it growing with the threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ConcurrentBenchmarks {
+    /**
+     * The operations of a shared tree.
+     */
+    private interface SharedSet {
+        boolean contains(Integer key);
+
+        boolean add(Integer key);
+
+        boolean remove(Integer key);
+    }
+
+    @Param({ "ConcurrentBST", "synchronized", "readWriteLock" })
+    public String tree;
+
+    @Param("90")
+    public int reads;
+
+    @Param("10000")
+    public int size;
+
+    private SharedSet set;
+
+    @Setup(Level.Trial)
+    public void create() {
+        if (reads < 0 || reads > 100)
+            throw new IllegalArgumentException("reads must be a percentage: " + reads);
+        set = createSet(tree);
+
+        // half of the keys, in random order so the unbalanced tree is not a list;
+        // the random values are 16 apart, divided by 16 they are a permutation of the keys
+        int[] keys = Datasets.generate(Datasets.Shape.RANDOM, size, Datasets.SEED);
+        for (int i = 0; i < size; i += 2) {
+            set.add(Math.floorMod(Math.floorDiv(keys[i], 16), size));
+        }
+    }
+
+    @Benchmark
+    public boolean mix() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Integer key = random.nextInt(size);
+        int choice = random.nextInt(100);
+        if (choice < reads)
+            return set.contains(key);
+        else if (((choice - reads) & 1) == 0)
+            return set.add(key);
+        else
+            return set.remove(key);
+    }
+
+    private static SharedSet createSet(String name) {
+        switch (name) {
+        case "ConcurrentBST":
+            final ConcurrentBST<Integer> concurrent = new ConcurrentBST<Integer>();
+            return new SharedSet() {
+                public boolean contains(Integer key) {
+                    return concurrent.contains(key);
+                }
+
+                public boolean add(Integer key) {
+                    return concurrent.add(key);
+                }
+
+                public boolean remove(Integer key) {
+                    return concurrent.remove(key);
+                }
+            };
+        case "synchronized":
+            final BST<Integer> locked = new BST<Integer>(BST.Balancing.AVL);
+            return new SharedSet() {
+                public synchronized boolean contains(Integer key) {
+                    return locked.contains(key);
+                }
+
+                public synchronized boolean add(Integer key) {
+                    if (locked.contains(key))
+                        return false;
+                    locked.add(key);
+                    return true;
+                }
+
+                public synchronized boolean remove(Integer key) {
+                    if (!locked.contains(key))
+                        return false;
+                    locked.remove(key);
+                    return true;
+                }
+            };
+        case "readWriteLock":
+            final BST<Integer> shared = new BST<Integer>(BST.Balancing.AVL);
+            final ReadWriteLock lock = new ReentrantReadWriteLock();
+            return new SharedSet() {
+                public boolean contains(Integer key) {
+                    lock.readLock().lock();
+                    try {
+                        return shared.contains(key);
+                    } finally {
+                        lock.readLock().unlock();
+                    }
+                }
+
+                public boolean add(Integer key) {
+                    lock.writeLock().lock();
+                    try {
+                        if (shared.contains(key))
+                            return false;
+                        shared.add(key);
+                        return true;
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                }
+
+                public boolean remove(Integer key) {
+                    lock.writeLock().lock();
+                    try {
+                        if (!shared.contains(key))
+                            return false;
+                        shared.remove(key);
+                        return true;
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                }
+            };
+        default:
+            throw new IllegalArgumentException("Unknown tree " + name);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package bst;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generates input data for the benchmarks, and writes it to files in the
+ * format of integers.txt: five tab separated integers per line.
+ *
+ * Run it as "Datasets file size [random|sorted|duplicates] [seed]" to
+ * create an input file for BstMain.
+ */
+public final class Datasets {
+    /**
+     * The shapes of the generated data.
+     */
+    public enum Shape {
+        /** Distinct values in random order. */
+        RANDOM,
+        /** Distinct values in ascending order, the worst case of an unbalanced tree. */
+        SORTED,
+        /** Random values with about 16 occurrences of each. */
+        DUPLICATES
+    }
+
+    /** The seed of the data of the benchmarks. */
+    public static final long SEED = 42;
+
+    private Datasets() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: Datasets file size [random|sorted|duplicates] [seed]");
+            System.exit(2);
+        }
+        int size = Integer.parseInt(args[1]);
+        Shape shape = (args.length > 2) ? Shape.valueOf(args[2].toUpperCase()) : Shape.RANDOM;
+        long seed = (args.length > 3) ? Long.parseLong(args[3]) : SEED;
+        write(Paths.get(args[0]), generate(shape, size, seed));
+    }
+
+    /**
+     * Generates size values of the given shape.  The same seed gives the
+     * same values.
+     *
+     * @param shape the shape of the data
+     * @param size the number of values
+     * @param seed the seed of the random generator
+     * @return the values
+     */
+    public static int[] generate(Shape shape, int size, long seed) {
+        if (size < 0)
+            throw new IllegalArgumentException("Size cannot be negative: " + size);
+
+        Random random = new Random(seed);
+        int[] values = new int[size];
+        switch (shape) {
+        case RANDOM:
+            // a random permutation of spread out distinct values
+            for (int i = 0; i < size; i++) {
+                values[i] = i * 16 - size * 8;
+            }
+            for (int i = size - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int swap = values[i];
+                values[i] = values[j];
+                values[j] = swap;
+            }
+            break;
+        case SORTED:
+            for (int i = 0; i < size; i++) {
+                values[i] = i * 16 - size * 8;
+            }
+            break;
+        case DUPLICATES:
+            int distinct = Math.max(1, size / 16);
+            for (int i = 0; i < size; i++) {
+                values[i] = random.nextInt(distinct);
+            }
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown shape " + shape);
+        }
+        return values;
+    }
+
+    /**
+     * Returns the values boxed, the way the generic structures store them.
+     *
+     * @param values the values to box
+     * @return the boxed values
+     */
+    public static Integer[] boxed(int[] values) {
+        Integer[] boxed = new Integer[values.length];
+        for (int i = 0; i < values.length; i++) {
+            boxed[i] = values[i];
+        }
+        return boxed;
+    }
+
+    /**
+     * Picks count of the given values with a Zipf distribution: the value of
+     * rank k, in a random order of the values, is picked with a probability
+     * proportional to 1 / k^exponent.  An exponent around 1 gives the
+     * skewed accesses of a small hot set.  The same seed gives the same
+     * picks.
+     *
+     * @param values the values to pick from, not empty
+     * @param count the number of picks
+     * @param exponent the skew, 0 for uniform picks
+     * @param seed the seed of the random generator
+     * @return the picked values
+     */
+    public static int[] zipf(int[] values, int count, double exponent, long seed) {
+        if (values.length == 0)
+            throw new IllegalArgumentException("No values to pick from");
+        if (count < 0 || exponent < 0)
+            throw new IllegalArgumentException("Count and exponent cannot be negative");
+
+        Random random = new Random(seed);
+        // the ranks are given to the values in random order, so the hot
+        // values are spread over the whole range
+        int[] ranked = values.clone();
+        for (int i = ranked.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = ranked[i];
+            ranked[i] = ranked[j];
+            ranked[j] = swap;
+        }
+        double[] cumulative = new double[ranked.length];
+        double total = 0;
+        for (int k = 0; k < ranked.length; k++) {
+            total += 1 / Math.pow(k + 1, exponent);
+            cumulative[k] = total;
+        }
+
+        int[] picks = new int[count];
+        for (int i = 0; i < count; i++) {
+            int k = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+            picks[i] = ranked[Math.min((k >= 0) ? k : -(k + 1), ranked.length - 1)];
+        }
+        return picks;
+    }
+
+    /**
+     * Writes values to a file in the format of integers.txt, replacing the
+     * file if it exists.
+     *
+     * @param file the file to write
+     * @param values the values to write
+     * @throws IOException if writing fails
+     */
+    public static void write(Path file, int[] values) throws IOException {
+        try (IntWriter output = new IntWriter(FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))) {
+            for (int i = 0; i < values.length; i++) {
+                output.writeInt(values[i]);
+                if (i % 5 == 4)
+                    output.newLine();
+                else
+                    output.writeChar('\t');
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package bst;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of the input and output of BstMain: parsing a file of size
+ * values in the format of integers.txt, reading it into an AVL IntBST and
+ * writing a tree of size values.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class InputOutputBenchmarks {
+    @Param({ "RANDOM", "SORTED", "DUPLICATES" })
+    public Datasets.Shape shape;
+
+    @Param("10000")
+    public int size;
+
+    private Path file;
+    private IntBST tree;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        file = Files.createTempFile("bench", ".txt");
+        Datasets.write(file, Datasets.generate(shape, size, Datasets.SEED));
+        tree = IntBST.fromSorted(Datasets.generate(Datasets.Shape.SORTED, size, 0), BST.Balancing.AVL);
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * The input file, opened again for every invocation.
+     */
+    @State(Scope.Thread)
+    public static class Input {
+        FileChannel channel;
+
+        @Setup(Level.Invocation)
+        public void open(InputOutputBenchmarks data) throws IOException {
+            channel = FileChannel.open(data.file);
+        }
+
+        @TearDown(Level.Invocation)
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    @Benchmark
+    public long intReaderRead(Input input, final Blackhole blackhole) throws IOException {
+        return IntReader.read(input.channel, value -> blackhole.consume(value));
+    }
+
+    @Benchmark
+    public IntBST bstMainReadAvl(Input input) throws IOException {
+        IntBST read = new IntBST(BST.Balancing.AVL);
+        BstMain.read(input.channel, read);
+        return read;
+    }
+
+    @Benchmark
+    public IntWriter bstMainWriteTree() throws IOException {
+        IntWriter output = new IntWriter(new NullChannel());
+        BstMain.write(output, tree, BST.Traversal.IN_ORDER);
+        output.flush();
+        return output;
+    }
+
+    /**
+     * A channel which drops everything written to it, so the output
+     * benchmarks do not measure the disk.
+     */
+    private static class NullChannel implements WritableByteChannel {
+        @Override
+        public int write(ByteBuffer source) {
+            int n = source.remaining();
+            source.position(source.limit());
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
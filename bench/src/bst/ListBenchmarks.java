@@ -0,0 +1,110 @@
+package bst;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of the LinkedList operations.  They do not depend on the
+ * values, only on their number, so they run on random data only.  An
+ * invocation works on all the size values, the removals in the middle on
+ * half of them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class ListBenchmarks {
+    @Param("10000")
+    public int size;
+
+    private Integer[] values;
+    /** The list the reads work on, built once. */
+    private LinkedList<Integer> built;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        values = Datasets.boxed(Datasets.generate(Datasets.Shape.RANDOM, size, Datasets.SEED));
+        built = fill(new LinkedList<Integer>(), values);
+    }
+
+    /**
+     * A list holding all the values for every invocation.
+     */
+    @State(Scope.Thread)
+    public static class Filled {
+        LinkedList<Integer> list;
+
+        @Setup(Level.Invocation)
+        public void create(ListBenchmarks data) {
+            list = fill(new LinkedList<Integer>(), data.values);
+        }
+    }
+
+    @Benchmark
+    public LinkedList<Integer> add() {
+        return fill(new LinkedList<Integer>(), values);
+    }
+
+    @Benchmark
+    public LinkedList<Integer> removeFirst(Filled filled) {
+        LinkedList<Integer> list = filled.list;
+        while (list.size() > 0) {
+            list.remove(0);
+        }
+        return list;
+    }
+
+    @Benchmark
+    public LinkedList<Integer> removeMiddle(Filled filled) {
+        LinkedList<Integer> list = filled.list;
+        for (int i = values.length / 2; i > 0; i--) {
+            list.remove(list.size() / 2);
+        }
+        return list;
+    }
+
+    @Benchmark
+    public LinkedList<Integer> insertMiddle() {
+        LinkedList<Integer> list = new LinkedList<Integer>();
+        for (Integer value : values) {
+            list.insert(list.size() / 2, value);
+        }
+        return list;
+    }
+
+    @Benchmark
+    public void getSequential(Blackhole blackhole) {
+        for (int i = 0; i < built.size(); i++) {
+            blackhole.consume(built.get(i));
+        }
+    }
+
+    @Benchmark
+    public void iterate(Blackhole blackhole) {
+        for (Integer value : built) {
+            blackhole.consume(value);
+        }
+    }
+
+    static <L extends LinkedList<Integer>> L fill(L list, Integer[] values) {
+        for (Integer value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,104 @@
+package bst;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of PersistentBST and BTree on random, sorted and duplicate
+ * heavy data.  An invocation works on all the size values.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class OtherTreeBenchmarks {
+    @Param({ "RANDOM", "SORTED", "DUPLICATES" })
+    public Datasets.Shape shape;
+
+    @Param("10000")
+    public int size;
+
+    private Integer[] values;
+    /** The B+-tree the iteration reads, built once. */
+    private BTree<Integer> built;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        values = Datasets.boxed(Datasets.generate(shape, size, Datasets.SEED));
+        built = fill(new BTree<Integer>(), values);
+    }
+
+    /**
+     * A B+-tree holding all the values for every invocation.
+     */
+    @State(Scope.Thread)
+    public static class FilledBTree {
+        BTree<Integer> tree;
+
+        @Setup(Level.Invocation)
+        public void create(OtherTreeBenchmarks data) {
+            tree = fill(new BTree<Integer>(), data.values);
+        }
+    }
+
+    @Benchmark
+    public PersistentBST<Integer> persistentAdd() {
+        PersistentBST<Integer> tree = new PersistentBST<Integer>();
+        for (Integer value : values) {
+            tree = tree.add(value);
+        }
+        return tree;
+    }
+
+    @Benchmark
+    public PersistentBST<Integer> transientAdd() {
+        PersistentBST.Transient<Integer> tree = new PersistentBST<Integer>().asTransient();
+        for (Integer value : values) {
+            tree.add(value);
+        }
+        return tree.persistent();
+    }
+
+    @Benchmark
+    public BTree<Integer> btreeAdd() {
+        return fill(new BTree<Integer>(), values);
+    }
+
+    @Benchmark
+    public BTree<Integer> btreeRemove(FilledBTree filled) {
+        BTree<Integer> tree = filled.tree;
+        for (Integer value : values) {
+            tree.remove(value);
+        }
+        return tree;
+    }
+
+    @Benchmark
+    public void btreeIterate(Blackhole blackhole) {
+        for (Integer value : built) {
+            blackhole.consume(value);
+        }
+    }
+
+    private static BTree<Integer> fill(BTree<Integer> tree, Integer[] values) {
+        for (Integer value : values) {
+            tree.add(value);
+        }
+        return tree;
+    }
+}
@@ -0,0 +1,62 @@
+package bst;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Looks up size keys picked with a Zipf distribution of the given
+ * exponent, so a few hot keys get most of the lookups.  A splay tree keeps
+ * them near its root, and the finger of a tree answers a repeated lookup
+ * at once.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class SkewedLookupBenchmarks {
+    @Param({ "NONE", "AVL", "SPLAY" })
+    public BST.Balancing balancing;
+
+    @Param({ "false", "true" })
+    public boolean finger;
+
+    @Param("1.0")
+    public double exponent;
+
+    @Param("10000")
+    public int size;
+
+    private Integer[] keys;
+    private BST<Integer> tree;
+
+    @Setup(Level.Trial)
+    public void build() {
+        int[] values = Datasets.generate(Datasets.Shape.RANDOM, size, Datasets.SEED);
+        keys = Datasets.boxed(Datasets.zipf(values, size, exponent, Datasets.SEED));
+        tree = BSTBenchmarks.fill(new BST<Integer>(balancing), Datasets.boxed(values));
+        if (finger)
+            tree.enableFinger();
+    }
+
+    @Benchmark
+    public void contains(Blackhole blackhole) {
+        for (Integer key : keys) {
+            blackhole.consume(tree.contains(key));
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package bst;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of sorting a list of size values of every shape, the way the
+ * "list" data structure of BstMain does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class SortBenchmarks {
+    @Param({ "RANDOM", "SORTED", "DUPLICATES" })
+    public Datasets.Shape shape;
+
+    @Param("10000")
+    public int size;
+
+    private SortableList<Integer> list;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        Integer[] values = Datasets.boxed(Datasets.generate(shape, size, Datasets.SEED));
+        list = ListBenchmarks.fill(new SortableList<Integer>(), values);
+    }
+
+    @Benchmark
+    public LinkedList<Integer> getSortedList() {
+        return list.getSortedList();
+    }
+}
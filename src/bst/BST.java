@@ -0,0 +1,1946 @@
+package bst;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Binary search tree implementation.
+ */
+public class BST<T extends Comparable<T>> {
+    private static final int SNAPSHOT_BUFFER_SIZE = 1 << 16;
+    /** Below this number of elements parallelBuild() works sequentially. */
+    private static final int PARALLEL_BUILD_THRESHOLD = 1 << 13;
+
+    private final Balancing balancing;
+    private final boolean multiset;
+    private BSTNode<T> root;
+    /** Number of nodes, which is the number of distinct elements. */
+    private int nodes;
+    private int modCount;
+    /**
+     * The descent path of add and remove in an AVL tree, which is balanced
+     * bottom up afterwards.  It is kept between operations so it is not
+     * allocated again for every one.
+     */
+    private final ArrayDeque<BSTNode<T>> path = new ArrayDeque<BSTNode<T>>();
+    /** Statistics of the operations, null unless enabled. */
+    private BSTStats stats;
+    /** Whether find() first checks the node it found last. */
+    private boolean fingerEnabled;
+    /** The node find() found last, valid while modCount is fingerModCount. */
+    private BSTNode<T> finger;
+    private int fingerModCount;
+
+    /**
+     * Tree node.
+     *
+     * @param <T> the data type held by the node
+     */
+    public static class BSTNode<T extends Comparable<T>> implements Comparable<BSTNode<T>> {
+        public BSTNode<T> left;
+        public BSTNode<T> right;
+        public T data;
+        /** Height of the subtree rooted here, maintained only by AVL trees. */
+        public int height;
+        /** Number of occurrences of data, above one only in multiset trees. */
+        public int count;
+        /** Number of elements in the subtree rooted here, counting occurrences. */
+        public int size;
+
+        public BSTNode(BSTNode<T> leftNode, BSTNode<T> rightNode, T value) {
+            left = leftNode;
+            right = rightNode;
+            data = value;
+            height = 1;
+            count = 1;
+            size = 1;
+        }
+
+        public int compareTo(BSTNode<T> other) {
+            return Integer.signum(data.compareTo(other.data));
+        }
+
+        @Override
+        public String toString() {
+            return Integer.toString(this.hashCode(), 16) + ": " +
+                    ((left == null) ? "null" : Integer.toString(left.hashCode(), 16)) + 
+                    " " + data.toString() + " " + 
+                    ((right == null) ? "null" : Integer.toString(right.hashCode(), 16));
+        }
+    }
+
+    /**
+     * The orders of tree traversal. 
+     */
+    public enum Traversal { PRE_ORDER, IN_ORDER, POST_ORDER };
+
+    /**
+     * The balancing policies of the tree.  NONE keeps the tree exactly as
+     * the insertion order shapes it.  AVL rotates after every add and remove
+     * so the height stays O(log n) whatever the input order.  SPLAY moves
+     * the element of every add, remove, contains and count to the root, so
+     * frequently used elements stay near the top and each operation costs
+     * O(log n) amortized; since lookups change its shape, a lookup in a
+     * splay tree fails the iterators in use like a modification.
+     */
+    public enum Balancing { NONE, AVL, SPLAY };
+
+    /**
+     * Creates an empty tree which is not rebalanced.
+     */
+    public BST() {
+        this(Balancing.NONE);
+    }
+
+    /**
+     * Creates an empty tree with the given balancing policy.
+     *
+     * @param balancing the balancing policy
+     */
+    public BST(Balancing balancing) {
+        this(balancing, false);
+    }
+
+    /**
+     * Creates an empty tree with the given balancing policy.  A multiset
+     * tree counts the occurrences of equal elements in a single node
+     * instead of replacing the element, so its memory is proportional to
+     * the number of distinct elements.
+     *
+     * @param balancing the balancing policy
+     * @param multiset true to count duplicates, false to replace them
+     */
+    public BST(Balancing balancing, boolean multiset) {
+        if (balancing == null)
+            throw new IllegalArgumentException("Balancing policy is required");
+        this.balancing = balancing;
+        this.multiset = multiset;
+    }
+
+    /**
+     * Returns the balancing policy of this tree.
+     *
+     * @return the balancing policy
+     */
+    public Balancing getBalancing() {
+        return balancing;
+    }
+
+    /**
+     * Returns true if this tree counts duplicate elements.
+     *
+     * @return true for a multiset tree
+     */
+    public boolean isMultiset() {
+        return multiset;
+    }
+
+    /**
+     * Starts recording statistics of the operations on this tree, or
+     * returns the statistics already being recorded.  Register them with
+     * BSTStats.register() to read them over JMX, and remove them with
+     * BSTStats.unregister() once the tree is no longer used.
+     *
+     * @return the statistics of this tree
+     */
+    public BSTStats enableStats() {
+        if (stats == null)
+            stats = new BSTStats(this);
+        return stats;
+    }
+
+    /**
+     * Stops recording statistics.  The statistics recorded so far keep
+     * their values.
+     */
+    public void disableStats() {
+        stats = null;
+    }
+
+    /**
+     * Returns the statistics of the operations on this tree.
+     *
+     * @return the statistics, or null if they are not recorded
+     */
+    public BSTStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Makes contains() and count() check the element they found last
+     * before descending from the root, so looking up the same element
+     * again costs one comparison as long as the tree is not modified.
+     * It pays off when lookups repeat, otherwise it costs one comparison
+     * per lookup.  A splay tree already has its last element at the root.
+     */
+    public void enableFinger() {
+        fingerEnabled = true;
+    }
+
+    /**
+     * Stops checking the element found last.
+     */
+    public void disableFinger() {
+        fingerEnabled = false;
+        finger = null;
+    }
+
+    /**
+     * Returns how many times the tree contains data.  A tree which is not a
+     * multiset contains an element at most once.
+     *
+     * @param data the element to count
+     * @return the number of occurrences of data
+     */
+    public int count(T data) {
+        if (data == null)
+            throw new IllegalArgumentException("Cannot count nulls");
+
+        BSTNode<T> node = find(data);
+        return (node == null) ? 0 : node.count;
+    }
+
+    /**
+     * Tells whether the tree contains data.
+     *
+     * @param data the element to look for
+     * @return true if data is in the tree
+     */
+    public boolean contains(T data) {
+        if (data == null)
+            throw new IllegalArgumentException("Cannot look for nulls");
+        return find(data) != null;
+    }
+
+    /**
+     * Returns the smallest element of the tree.
+     *
+     * @return the smallest element
+     * @throws NoSuchElementException if the tree is empty
+     */
+    public T min() {
+        if (root == null)
+            throw new NoSuchElementException("The tree is empty");
+        BSTNode<T> here = root;
+        while (here.left != null) {
+            here = here.left;
+        }
+        return here.data;
+    }
+
+    /**
+     * Returns the largest element of the tree.
+     *
+     * @return the largest element
+     * @throws NoSuchElementException if the tree is empty
+     */
+    public T max() {
+        if (root == null)
+            throw new NoSuchElementException("The tree is empty");
+        BSTNode<T> here = root;
+        while (here.right != null) {
+            here = here.right;
+        }
+        return here.data;
+    }
+
+    /**
+     * Returns the largest element smaller than or equal to data.
+     *
+     * @param data the upper bound
+     * @return the floor of data, or null if there is none
+     */
+    public T floor(T data) {
+        return nearest(data, true, true);
+    }
+
+    /**
+     * Returns the smallest element greater than or equal to data.
+     *
+     * @param data the lower bound
+     * @return the ceiling of data, or null if there is none
+     */
+    public T ceiling(T data) {
+        return nearest(data, false, true);
+    }
+
+    /**
+     * Returns the largest element strictly smaller than data.
+     *
+     * @param data the upper bound
+     * @return the element before data, or null if there is none
+     */
+    public T lower(T data) {
+        return nearest(data, true, false);
+    }
+
+    /**
+     * Returns the smallest element strictly greater than data.
+     *
+     * @param data the lower bound
+     * @return the element after data, or null if there is none
+     */
+    public T higher(T data) {
+        return nearest(data, false, false);
+    }
+
+    /**
+     * Finds the node holding data.  A splay tree then splays the node, or
+     * the last node of the search if data is not in the tree.
+     *
+     * @param data the element to look for
+     * @return the node of data, or null if data is not in the tree
+     */
+    private BSTNode<T> find(T data) {
+        if (fingerEnabled && finger != null && fingerModCount == modCount && data.compareTo(finger.data) == 0) {
+            // one comparison with the finger, counted as a descent of depth 1
+            if (stats != null)
+                stats.searched(1);
+            return finger;
+        }
+
+        int depth = 0;
+        BSTNode<T> here = root;
+        while (here != null) {
+            int cmp = data.compareTo(here.data);
+            depth++;
+            if (cmp == 0)
+                break;
+            if (balancing == Balancing.SPLAY)
+                path.push(here);
+            here = (cmp < 0) ? here.left : here.right;
+        }
+        if (balancing == Balancing.SPLAY) {
+            BSTNode<T> last = (here != null) ? here : path.poll();
+            if (last != null)
+                root = splay(last);
+        }
+        if (stats != null)
+            stats.searched(depth);
+        if (fingerEnabled && here != null) {
+            finger = here;
+            fingerModCount = modCount;
+        }
+        return here;
+    }
+
+    /**
+     * Finds the element closest to data on one side of it with a single
+     * descent, remembering the last node passed on that side.
+     *
+     * @param data the bound
+     * @param below true to look for smaller elements, false for greater ones
+     * @param inclusive true if data itself qualifies
+     * @return the closest element, or null if there is none
+     */
+    private T nearest(T data, boolean below, boolean inclusive) {
+        if (data == null)
+            throw new IllegalArgumentException("Cannot look for nulls");
+
+        int depth = 0;
+        BSTNode<T> best = null;
+        BSTNode<T> here = root;
+        while (here != null) {
+            int cmp = data.compareTo(here.data);
+            depth++;
+            if (cmp == 0 && inclusive) {
+                best = here;
+                break;
+            }
+            if (below ? cmp > 0 : cmp < 0) {
+                best = here;
+                here = below ? here.right : here.left;
+            } else {
+                here = below ? here.left : here.right;
+            }
+        }
+        if (stats != null)
+            stats.searched(depth);
+        return (best == null) ? null : best.data;
+    }
+
+    /**
+     * Builds a tree of minimal height from values sorted in ascending
+     * order, in linear time and without comparing them to tree nodes.
+     * Equal consecutive values are stored once, the last one wins like
+     * with add().
+     *
+     * @param sorted the values in ascending order
+     * @param balancing the balancing policy of the new tree
+     * @return a new tree holding the values
+     * @throws IllegalArgumentException if the values are not sorted or one is null
+     */
+    public static <T extends Comparable<T>> BST<T> fromSorted(Iterable<T> sorted, Balancing balancing) {
+        BST<T> tree = new BST<T>(balancing);
+        List<BSTNode<T>> nodes = new ArrayList<BSTNode<T>>();
+        BSTNode<T> previous = null;
+        for (T data : sorted) {
+            if (data == null)
+                throw new IllegalArgumentException("Cannot add nulls");
+            if (previous != null) {
+                int cmp = data.compareTo(previous.data);
+                if (cmp < 0)
+                    throw new IllegalArgumentException("Values are not sorted, " + data + " follows " + previous.data);
+                if (cmp == 0) {
+                    previous.data = data;
+                    continue;
+                }
+            }
+            previous = new BSTNode<T>(null, null, data);
+            nodes.add(previous);
+        }
+        tree.root = linkBalanced(nodes, 0, nodes.size());
+        tree.nodes = nodes.size();
+        return tree;
+    }
+
+    /**
+     * Builds a tree of minimal height from an array sorted in ascending
+     * order.
+     *
+     * @param sorted the values in ascending order
+     * @param balancing the balancing policy of the new tree
+     * @return a new tree holding the values
+     * @throws IllegalArgumentException if the values are not sorted or one is null
+     * @see #fromSorted(Iterable, Balancing)
+     */
+    public static <T extends Comparable<T>> BST<T> fromSorted(T[] sorted, Balancing balancing) {
+        return fromSorted(Arrays.asList(sorted), balancing);
+    }
+
+    /**
+     * Writes a binary snapshot of the tree: its balancing policy and its
+     * distinct elements in ascending order, with their counts in a
+     * multiset tree.  See SnapshotFormat for the layout.
+     *
+     * @param output where the snapshot is written, it is not closed
+     * @param codec writes the elements
+     * @throws IOException if writing fails
+     */
+    public void writeSnapshot(OutputStream output, KeyCodec<T> codec) throws IOException {
+        if (codec == null)
+            throw new IllegalArgumentException("Key codec is required");
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output, SNAPSHOT_BUFFER_SIZE));
+        ByteBuffer header = ByteBuffer.allocate(SnapshotFormat.HEADER_SIZE);
+        SnapshotFormat.putHeader(header, SnapshotFormat.CODEC_KEYS, balancing, multiset, nodes);
+        out.write(header.array());
+
+        ArrayDeque<BSTNode<T>> stack = new ArrayDeque<BSTNode<T>>();
+        BSTNode<T> current = root;
+        while (current != null || !stack.isEmpty()) {
+            while (current != null) {
+                stack.push(current);
+                current = current.left;
+            }
+            BSTNode<T> node = stack.pop();
+            current = node.right;
+
+            codec.write(out, node.data);
+            if (multiset)
+                out.writeInt(node.count);
+        }
+        out.flush();
+    }
+
+    /**
+     * Loads a tree from a snapshot written by writeSnapshot().  The
+     * elements are linked into a tree of minimal height once they are
+     * read, in linear time and without rebalancing; each one is only
+     * compared with the one before it, to check that they ascend.
+     *
+     * @param input where the snapshot is read from, it is not closed and
+     *        it may be read past the end of the snapshot
+     * @param codec reads the elements
+     * @return the tree, with the balancing policy and multiset mode of the
+     *         tree which was written
+     * @throws IOException if reading fails, the input is not a snapshot or
+     *         its elements are not in ascending order
+     */
+    public static <T extends Comparable<T>> BST<T> readSnapshot(InputStream input, KeyCodec<T> codec)
+            throws IOException {
+        if (codec == null)
+            throw new IllegalArgumentException("Key codec is required");
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(input, SNAPSHOT_BUFFER_SIZE));
+        byte[] header = new byte[SnapshotFormat.HEADER_SIZE];
+        in.readFully(header);
+        SnapshotFormat.Header snapshot = SnapshotFormat.getHeader(ByteBuffer.wrap(header), SnapshotFormat.CODEC_KEYS);
+
+        // the count is not trusted to size the list, the elements must be there
+        int count = (int) snapshot.count;
+        List<BSTNode<T>> nodes = new ArrayList<BSTNode<T>>();
+        T previous = null;
+        for (int i = 0; i < count; i++) {
+            T data = codec.read(in);
+            if (data == null)
+                throw new IOException("Tree snapshot holds a null element");
+            if (previous != null && data.compareTo(previous) <= 0)
+                throw new IOException("Tree snapshot elements are not ascending, " + data + " follows " + previous);
+            previous = data;
+            BSTNode<T> node = new BSTNode<T>(null, null, data);
+            if (snapshot.multiset) {
+                node.count = in.readInt();
+                if (node.count < 1)
+                    throw new IOException("Invalid element count in tree snapshot: " + node.count);
+            }
+            nodes.add(node);
+        }
+
+        BST<T> tree = new BST<T>(snapshot.balancing, snapshot.multiset);
+        tree.root = linkBalanced(nodes, 0, count);
+        tree.nodes = count;
+        return tree;
+    }
+
+    /**
+     * Links the nodes between from (inclusive) and to (exclusive) into a
+     * tree of minimal height, the middle node becomes the root.  The
+     * recursion depth is the logarithm of the number of nodes.
+     *
+     * @param nodes the nodes in ascending order
+     * @param from the first node of the tree
+     * @param to the end of the nodes of the tree
+     * @return the root of the tree
+     */
+    private static <T extends Comparable<T>> BSTNode<T> linkBalanced(List<BSTNode<T>> nodes, int from, int to) {
+        if (from >= to)
+            return null;
+
+        int middle = (from + to) >>> 1;
+        BSTNode<T> node = nodes.get(middle);
+        node.left = linkBalanced(nodes, from, middle);
+        node.right = linkBalanced(nodes, middle + 1, to);
+        update(node);
+        return node;
+    }
+    
+    /**
+     * Returns the number of elements in the tree, counting every
+     * occurrence in a multiset tree.
+     *
+     * @return the number of elements
+     */
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * Returns the height of the tree, the number of nodes on its longest
+     * path from the root.  An AVL tree knows it, other trees are walked
+     * level by level.
+     *
+     * @return the height of the tree, 0 if it is empty
+     */
+    public int height() {
+        if (balancing == Balancing.AVL || root == null)
+            return height(root);
+
+        int height = 0;
+        ArrayDeque<BSTNode<T>> level = new ArrayDeque<BSTNode<T>>();
+        level.add(root);
+        while (!level.isEmpty()) {
+            height++;
+            for (int i = level.size(); i > 0; i--) {
+                BSTNode<T> node = level.poll();
+                if (node.left != null)
+                    level.add(node.left);
+                if (node.right != null)
+                    level.add(node.right);
+            }
+        }
+        return height;
+    }
+
+    /**
+     * Returns the number of nodes, which is the number of distinct
+     * elements.
+     */
+    int nodeCount() {
+        return nodes;
+    }
+
+    /**
+     * Returns the number of elements of the tree which are smaller than
+     * data, which is the index data has or would have in an in-order
+     * traversal.
+     *
+     * @param data the element to rank
+     * @return the number of elements smaller than data
+     */
+    public int rank(T data) {
+        if (data == null)
+            throw new IllegalArgumentException("Cannot rank nulls");
+        return countBelow(data, false);
+    }
+
+    /**
+     * Returns the element at the given index of the in-order traversal,
+     * the smallest element has index 0.
+     *
+     * @param index the index of the element
+     * @return the element at index
+     * @throws IndexOutOfBoundsException if index is negative or not less than size()
+     */
+    public T select(int index) {
+        if (index < 0 || index >= size())
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size());
+
+        BSTNode<T> here = root;
+        while (true) {
+            int leftSize = size(here.left);
+            if (index < leftSize) {
+                here = here.left;
+            } else if (index < leftSize + here.count) {
+                return here.data;
+            } else {
+                index -= leftSize + here.count;
+                here = here.right;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of elements between lo and hi, both included.
+     *
+     * @param lo the lower bound of the range
+     * @param hi the upper bound of the range
+     * @return the number of elements in the range
+     */
+    public int countInRange(T lo, T hi) {
+        if (lo == null || hi == null)
+            throw new IllegalArgumentException("Range bounds are required");
+        if (lo.compareTo(hi) > 0)
+            return 0;
+        return countBelow(hi, true) - countBelow(lo, false);
+    }
+
+    /**
+     * Counts the elements smaller than data, or smaller or equal if
+     * inclusive, with one descent from the root.
+     *
+     * @param data the bound
+     * @param inclusive true to count the elements equal to data too
+     * @return the number of elements below the bound
+     */
+    private int countBelow(T data, boolean inclusive) {
+        int depth = 0;
+        int count = 0;
+        BSTNode<T> here = root;
+        while (here != null) {
+            int cmp = data.compareTo(here.data);
+            depth++;
+            if (cmp < 0) {
+                here = here.left;
+            } else if (cmp > 0) {
+                count += size(here.left) + here.count;
+                here = here.right;
+            } else {
+                count += size(here.left) + (inclusive ? here.count : 0);
+                break;
+            }
+        }
+        if (stats != null)
+            stats.searched(depth);
+        return count;
+    }
+
+    /**
+     * Returns a list containing the values stored in this tree in the 
+     * specified traversal order.  The elements of a multiset tree are
+     * repeated as many times as they occur.
+     * 
+     * @param order the traversal order of the tree
+     * @return a list of nodes
+     */
+    public LinkedList<T> elements(Traversal order) {
+        LinkedList<T> list = new LinkedList<T>();
+        for (T data : iterate(order)) {
+            list.add(data);
+        }
+        return list;
+    }
+
+    /**
+     * Returns the values stored in this tree in the specified traversal
+     * order.  The values are produced lazily while iterating, an iterator
+     * only keeps the path to its current node.  Iterators fail if the tree
+     * is modified while they are in use.  The elements of a multiset tree
+     * are repeated as many times as they occur.
+     *
+     * @param order the traversal order of the tree
+     * @return the tree values in traversal order
+     */
+    public Iterable<T> iterate(Traversal order) {
+        return iterate(order, false);
+    }
+
+    /**
+     * Returns the values stored in this tree in the specified traversal
+     * order, like iterate(Traversal).
+     *
+     * @param order the traversal order of the tree
+     * @param distinct true to return each element of a multiset tree once,
+     *        false to repeat it as many times as it occurs
+     * @return the tree values in traversal order
+     */
+    public Iterable<T> iterate(final Traversal order, final boolean distinct) {
+        if (order == null)
+            throw new IllegalArgumentException("Traversal order is required");
+
+        return new Iterable<T>() {
+            @Override
+            public Iterator<T> iterator() {
+                switch (order) {
+                case IN_ORDER:
+                    return new InOrderIterator(distinct);
+                case POST_ORDER:
+                    return new PostOrderIterator(distinct);
+                case PRE_ORDER:
+                    return new PreOrderIterator(distinct);
+                default:
+                    throw new IllegalArgumentException();
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns the elements between lo and hi, both included, in ascending
+     * order.  The iterator descends straight to lo and stops after hi, so
+     * going through k elements costs O(log n + k).  Like the iterators of
+     * iterate(), it fails if the tree is modified while it is in use, and
+     * the elements of a multiset tree are repeated as many times as they
+     * occur.
+     *
+     * @param lo the lower bound of the range
+     * @param hi the upper bound of the range
+     * @return the tree values in the range
+     */
+    public Iterable<T> range(final T lo, final T hi) {
+        if (lo == null || hi == null)
+            throw new IllegalArgumentException("Range bounds are required");
+
+        return new Iterable<T>() {
+            @Override
+            public Iterator<T> iterator() {
+                return new RangeIterator(lo, hi);
+            }
+        };
+    }
+
+    /**
+     * Returns a spliterator over the elements in ascending order.  The
+     * elements of a multiset tree are repeated as many times as they
+     * occur.  It splits at subtree boundaries and knows the exact size of
+     * every part from the subtree sizes, so a parallel stream divides the
+     * tree evenly without copying it.  Like the iterators, it fails if the
+     * tree is modified while it is in use.
+     *
+     * @return a spliterator over the elements in order
+     */
+    public Spliterator<T> spliterator() {
+        return new InOrderSpliterator();
+    }
+
+    /**
+     * Returns a sequential stream of the elements in ascending order.
+     *
+     * @return a stream of the elements
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Returns a parallel stream of the elements in ascending order.
+     *
+     * @return a parallel stream of the elements
+     */
+    public Stream<T> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * In-order spliterator.  Like the in-order iterator its stack holds the
+     * left spine of the nodes not yet visited, each standing for itself and
+     * its right subtree, so the node at the bottom of the stack is followed
+     * by the greatest elements.  remaining is the exact number of elements
+     * left and it ends the traversal, which lets a split hand out a single
+     * node without its right subtree.
+     */
+    private class InOrderSpliterator implements Spliterator<T> {
+        private final ArrayDeque<BSTNode<T>> stack;
+        private final int expectedModCount;
+        private long remaining;
+        /** The last node returned and how many more times to return it. */
+        private BSTNode<T> repeated;
+        private int repeats;
+
+        InOrderSpliterator() {
+            stack = new ArrayDeque<BSTNode<T>>();
+            expectedModCount = modCount;
+            remaining = size(root);
+            pushLeft(root);
+        }
+
+        private InOrderSpliterator(ArrayDeque<BSTNode<T>> stack, int expectedModCount, long remaining) {
+            this.stack = stack;
+            this.expectedModCount = expectedModCount;
+            this.remaining = remaining;
+        }
+
+        private void pushLeft(BSTNode<T> node) {
+            while (node != null) {
+                stack.push(node);
+                node = node.left;
+            }
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (remaining == 0)
+                return false;
+
+            remaining--;
+            if (repeats > 0) {
+                repeats--;
+                action.accept(repeated.data);
+                return true;
+            }
+            BSTNode<T> node = stack.pop();
+            if (remaining >= node.count)
+                pushLeft(node.right);
+            repeated = node;
+            repeats = node.count - 1;
+            action.accept(node.data);
+            return true;
+        }
+
+        /**
+         * Gives away the elements before the node at the bottom of the
+         * stack, which are the left subtree of that node.  When that node
+         * is the only one left, the new spliterator gets the node itself and
+         * this one keeps its right subtree.
+         */
+        @Override
+        public Spliterator<T> trySplit() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (stack.isEmpty())
+                return null;
+
+            BSTNode<T> bottom = stack.peekLast();
+            long kept;
+            ArrayDeque<BSTNode<T>> prefix = new ArrayDeque<BSTNode<T>>();
+            if (stack.size() > 1) {
+                // the kept node and its right subtree
+                kept = bottom.count + size(bottom.right);
+                while (stack.size() > 1) {
+                    prefix.addLast(stack.pollFirst());
+                }
+            } else if (bottom.right != null && remaining > bottom.count + repeats) {
+                kept = size(bottom.right);
+                prefix.push(stack.pop());
+                pushLeft(bottom.right);
+            } else {
+                return null;
+            }
+
+            InOrderSpliterator split = new InOrderSpliterator(prefix, expectedModCount, remaining - kept);
+            // the repeats of the last node returned come first
+            split.repeated = repeated;
+            split.repeats = repeats;
+            repeats = 0;
+            remaining = kept;
+            return split;
+        }
+
+        @Override
+        public long estimateSize() {
+            return remaining;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SORTED | SIZED | SUBSIZED | NONNULL | (multiset ? 0 : DISTINCT);
+        }
+
+        /**
+         * Returns null, the elements are in their natural order.
+         */
+        @Override
+        public Comparator<? super T> getComparator() {
+            return null;
+        }
+    }
+
+    /**
+     * Iterator walking the tree with an explicit stack of pending nodes.
+     * The subclasses define which nodes are on the stack.
+     */
+    private abstract class TreeIterator implements Iterator<T> {
+        protected final ArrayDeque<BSTNode<T>> stack = new ArrayDeque<BSTNode<T>>();
+        private final int expectedModCount = modCount;
+        private final boolean distinct;
+        /** The last node returned and how many more times to return it. */
+        private BSTNode<T> repeated;
+        private int repeats;
+
+        TreeIterator(boolean distinct) {
+            this.distinct = distinct;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return repeats > 0 || !stack.isEmpty();
+        }
+
+        @Override
+        public T next() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (repeats > 0) {
+                repeats--;
+                return repeated.data;
+            }
+            if (stack.isEmpty())
+                throw new NoSuchElementException();
+
+            BSTNode<T> node = nextNode();
+            if (!distinct && node.count > 1) {
+                repeated = node;
+                repeats = node.count - 1;
+            }
+            return node.data;
+        }
+
+        /**
+         * Removes the next node from the stack and pushes the nodes which
+         * follow it.
+         *
+         * @return the next node in traversal order
+         */
+        protected abstract BSTNode<T> nextNode();
+    }
+
+    /**
+     * In-order iterator, the stack holds the left spine of the nodes not
+     * yet visited.
+     */
+    private class InOrderIterator extends TreeIterator {
+        InOrderIterator(boolean distinct) {
+            super(distinct);
+            pushLeft(root);
+        }
+
+        @Override
+        protected BSTNode<T> nextNode() {
+            BSTNode<T> node = stack.pop();
+            pushLeft(node.right);
+            return node;
+        }
+
+        private void pushLeft(BSTNode<T> node) {
+            while (node != null) {
+                stack.push(node);
+                node = node.left;
+            }
+        }
+    }
+
+    /**
+     * In-order iterator over a range.  The stack starts with the path of
+     * the nodes not smaller than lo, and it is emptied as soon as its top,
+     * which is the next node, is greater than hi.
+     */
+    private class RangeIterator extends TreeIterator {
+        private final T hi;
+
+        RangeIterator(T lo, T hi) {
+            super(false);
+            this.hi = hi;
+            int depth = 0;
+            BSTNode<T> node = root;
+            while (node != null) {
+                depth++;
+                if (node.data.compareTo(lo) >= 0) {
+                    stack.push(node);
+                    node = node.left;
+                } else {
+                    node = node.right;
+                }
+            }
+            if (stats != null)
+                stats.searched(depth);
+            dropAboveRange();
+        }
+
+        @Override
+        protected BSTNode<T> nextNode() {
+            BSTNode<T> node = stack.pop();
+            for (BSTNode<T> left = node.right; left != null; left = left.left) {
+                stack.push(left);
+            }
+            dropAboveRange();
+            return node;
+        }
+
+        private void dropAboveRange() {
+            if (!stack.isEmpty() && stack.peek().data.compareTo(hi) > 0)
+                stack.clear();
+        }
+    }
+
+    /**
+     * Pre-order iterator, the stack holds the roots of the subtrees not yet
+     * visited.
+     */
+    private class PreOrderIterator extends TreeIterator {
+        PreOrderIterator(boolean distinct) {
+            super(distinct);
+            if (root != null)
+                stack.push(root);
+        }
+
+        @Override
+        protected BSTNode<T> nextNode() {
+            BSTNode<T> node = stack.pop();
+            // push the right subtree first so the left one is visited first
+            if (node.right != null)
+                stack.push(node.right);
+            if (node.left != null)
+                stack.push(node.left);
+            return node;
+        }
+    }
+
+    /**
+     * Post-order iterator, the stack holds the path from the root to the
+     * next node to visit, which is always the first leaf of a subtree.
+     */
+    private class PostOrderIterator extends TreeIterator {
+        PostOrderIterator(boolean distinct) {
+            super(distinct);
+            pushFirstLeaf(root);
+        }
+
+        @Override
+        protected BSTNode<T> nextNode() {
+            BSTNode<T> node = stack.pop();
+            // coming back from a left subtree, the right one is visited next
+            BSTNode<T> parent = stack.peek();
+            if (parent != null && parent.left == node)
+                pushFirstLeaf(parent.right);
+            return node;
+        }
+
+        private void pushFirstLeaf(BSTNode<T> node) {
+            while (node != null) {
+                stack.push(node);
+                node = (node.left != null) ? node.left : node.right;
+            }
+        }
+    }
+
+    /**
+     * Adds the specified data to the tree.  If the tree already contains
+     * the data then it replaces it with the new data element, or in a
+     * multiset tree it counts one more occurrence of it.
+     * 
+     * @param data the data element to add to the tree
+     */
+    public void add(T data) {
+        if (data == null)
+            throw new IllegalArgumentException("Cannot add nulls");
+
+        if (root == null) {
+            root = new BSTNode<T>(null, null, data);
+            nodes++;
+            modCount++;
+            if (stats != null)
+                stats.added(0, true);
+            return;
+        }
+
+        int depth = 0;
+        BSTNode<T> here = root;
+        while (true) {
+            int cmp = data.compareTo(here.data);
+            depth++;
+            if (cmp == 0) {
+                // replace in current node or count it, the shape does not change
+                if (multiset) {
+                    here.count++;
+                    here.size++;
+                    modCount++;
+                    root = (balancing == Balancing.SPLAY) ? splay(here) : rebalancePath(0, root);
+                } else if (balancing == Balancing.SPLAY) {
+                    here.data = data;
+                    root = splay(here);
+                } else {
+                    here.data = data;
+                    abandonPath(data, 1);
+                }
+                if (stats != null)
+                    stats.added(depth, false);
+                return;
+            }
+            enterPath(here, 1);
+
+            // if data smaller than here node insert into the left subtree
+            if (cmp < 0) {
+                if (here.left == null) {
+                    here.left = new BSTNode<T>(null, null, data);
+                    here = here.left;
+                    break;
+                }
+                here = here.left;
+            }
+            // if data greater than here node insert into the right subtree
+            else {
+                if (here.right == null) {
+                    here.right = new BSTNode<T>(null, null, data);
+                    here = here.right;
+                    break;
+                }
+                here = here.right;
+            }
+        }
+        nodes++;
+        modCount++;
+        root = (balancing == Balancing.SPLAY) ? splay(here) : rebalancePath(0, root);
+        if (stats != null)
+            stats.added(depth, true);
+    }
+
+    /**
+     * Remove the specified data from the tree, if it exists.  A multiset
+     * tree removes one occurrence of it.
+     * @param data the data element to remove
+     */
+    public void remove(T data) {
+        if (data == null)
+            throw new IllegalArgumentException("Cannot remove nulls");
+
+        removeOccurrence(data);
+    }
+
+    /**
+     * Removes the elements of a batch from the tree.  Each element of the
+     * batch removes one occurrence of an equal tree element, if there is
+     * one left.
+     *
+     * Small batches are removed one by one.  A batch which is large
+     * compared to the tree is sorted and removed in a single in-order pass
+     * over the tree, after which the remaining nodes are relinked into a
+     * tree of minimal height.  That costs O(n + m log m) for m elements
+     * instead of m descents from the root.
+     *
+     * @param batch the elements to remove
+     * @return the number of occurrences actually removed
+     */
+    public int removeAll(Iterable<T> batch) {
+        List<T> keys = new ArrayList<T>();
+        for (T data : batch) {
+            if (data == null)
+                throw new IllegalArgumentException("Cannot remove nulls");
+            keys.add(data);
+        }
+
+        int removed = 0;
+        // a descent costs about log2(n) so one pass is cheaper for large batches
+        if ((long) keys.size() * (32 - Integer.numberOfLeadingZeros(nodes)) < nodes) {
+            for (T data : keys) {
+                if (removeOccurrence(data))
+                    removed++;
+            }
+            return removed;
+        }
+
+        Collections.sort(keys);
+        long comparisons = 0;
+        List<BSTNode<T>> kept = new ArrayList<BSTNode<T>>(nodes);
+        int next = 0;
+        ArrayDeque<BSTNode<T>> stack = new ArrayDeque<BSTNode<T>>();
+        BSTNode<T> current = root;
+        while (current != null || !stack.isEmpty()) {
+            while (current != null) {
+                stack.push(current);
+                current = current.left;
+            }
+            BSTNode<T> node = stack.pop();
+            current = node.right;
+
+            // skip the batch elements smaller than node, then count the equal ones
+            int matches = 0;
+            while (next < keys.size()) {
+                int cmp = keys.get(next).compareTo(node.data);
+                comparisons++;
+                if (cmp > 0)
+                    break;
+                if (cmp == 0)
+                    matches++;
+                next++;
+            }
+
+            int count = node.count - Math.min(matches, node.count);
+            removed += node.count - count;
+            if (count > 0) {
+                node.count = count;
+                kept.add(node);
+            }
+        }
+
+        if (stats != null) {
+            stats.compared(comparisons);
+            stats.freed(nodes - kept.size());
+        }
+        if (removed > 0) {
+            root = linkBalanced(kept, 0, kept.size());
+            nodes = kept.size();
+            modCount++;
+        }
+        return removed;
+    }
+
+    /**
+     * Splits the tree at key: the elements smaller than key stay in this
+     * tree and the others move to a new tree with the same balancing
+     * policy and multiset mode.  An AVL tree splits in O(log n) and both
+     * trees stay balanced.  A tree which is not balanced splits along the
+     * search path for key without recursion.  A multiset tree also counts
+     * the nodes of the new tree, which costs O(k) for its k nodes.
+     *
+     * @param key where to split
+     * @return the tree of the elements greater than or equal to key
+     */
+    public BST<T> split(T key) {
+        if (key == null)
+            throw new IllegalArgumentException("Cannot split at nulls");
+
+        Split<T> parts = new Split<T>();
+        splitAt(root, key, parts);
+        BST<T> upper = new BST<T>(balancing, multiset);
+        upper.root = (parts.equal == null) ? parts.greater : joinMiddle(null, parts.equal, parts.greater);
+        upper.nodes = multiset ? countNodes(upper.root) : size(upper.root);
+        root = parts.less;
+        nodes -= upper.nodes;
+        modCount++;
+        return upper;
+    }
+
+    /**
+     * Joins two trees whose elements do not overlap into one tree: every
+     * element of left must be smaller than every element of right.  The
+     * smallest node of right becomes the middle node of the join, so two
+     * AVL trees join in O(log n) into a balanced tree.  Both trees are
+     * emptied.
+     *
+     * @param left the tree of the smaller elements
+     * @param right the tree of the greater elements
+     * @return a tree with the elements of both trees, the balancing policy
+     *         and the multiset mode they share
+     * @throws IllegalArgumentException if the trees differ in balancing or
+     *         multiset mode, or their elements overlap
+     */
+    public static <T extends Comparable<T>> BST<T> join(BST<T> left, BST<T> right) {
+        if (left == null || right == null)
+            throw new IllegalArgumentException("Trees to join are required");
+        if (left == right)
+            throw new IllegalArgumentException("Cannot join a tree with itself");
+        if (left.balancing != right.balancing || left.multiset != right.multiset)
+            throw new IllegalArgumentException("Trees to join must have the same balancing and multiset mode");
+        if (left.root != null && right.root != null && left.max().compareTo(right.min()) >= 0)
+            throw new IllegalArgumentException("Elements of the left tree must be smaller than those of the right tree");
+
+        BST<T> joined = new BST<T>(left.balancing, left.multiset);
+        if (left.root == null) {
+            joined.root = right.root;
+        } else if (right.root == null) {
+            joined.root = left.root;
+        } else {
+            BSTNode<T> middle = leftmost(right.root);
+            BSTNode<T> rest = joined.removeLeftmost(right.root);
+            joined.root = joined.joinMiddle(left.root, middle, rest);
+        }
+        joined.nodes = left.nodes + right.nodes;
+        left.clear();
+        right.clear();
+        return joined;
+    }
+
+    private void clear() {
+        root = null;
+        nodes = 0;
+        modCount++;
+    }
+
+    /**
+     * Builds a tree from values in any order on the common fork-join pool.
+     * The values are split in halves until they are small enough to be
+     * added to a tree sequentially, then the trees of the halves are
+     * merged with a parallel union built on split and join, so the result
+     * is balanced whatever the order of the values.  Duplicates are
+     * counted in a multiset tree, otherwise the last one wins like with
+     * add().
+     *
+     * @param values the values to add
+     * @param balancing the balancing policy of the new tree
+     * @param multiset true to count duplicates, false to replace them
+     * @return a new tree holding the values
+     */
+    public static <T extends Comparable<T>> BST<T> parallelBuild(Collection<? extends T> values, Balancing balancing,
+            boolean multiset) {
+        if (balancing == null)
+            throw new IllegalArgumentException("Balancing policy is required");
+
+        List<T> list = new ArrayList<T>(values);
+        for (T data : list) {
+            if (data == null)
+                throw new IllegalArgumentException("Cannot add nulls");
+        }
+
+        // the subtrees are built and merged as AVL trees, a tree which is
+        // not balanced only keeps the shape
+        BST<T> builder = new BST<T>(Balancing.AVL, multiset);
+        BST<T> tree = new BST<T>(balancing, multiset);
+        tree.root = ForkJoinPool.commonPool().invoke(builder.new BuildTask(list, 0, list.size()));
+        tree.nodes = multiset ? countNodes(tree.root) : size(tree.root);
+        return tree;
+    }
+
+    /**
+     * Builds the tree of the values between from and to, forking a task for
+     * each half of a large range.
+     */
+    private class BuildTask extends RecursiveTask<BSTNode<T>> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<T> values;
+        private final int from;
+        private final int to;
+
+        BuildTask(List<T> values, int from, int to) {
+            this.values = values;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected BSTNode<T> compute() {
+            if (to - from <= PARALLEL_BUILD_THRESHOLD) {
+                BST<T> tree = new BST<T>(Balancing.AVL, multiset);
+                for (int i = from; i < to; i++) {
+                    tree.add(values.get(i));
+                }
+                return tree.root;
+            }
+
+            int middle = (from + to) >>> 1;
+            BuildTask lower = new BuildTask(values, from, middle);
+            lower.fork();
+            BSTNode<T> later = new BuildTask(values, middle, to).compute();
+            return new UnionTask(lower.join(), later).compute();
+        }
+    }
+
+    /**
+     * Merges two AVL trees: the other tree is split at the root of the
+     * first one, then the parts on each side are merged, in parallel for
+     * large trees, and joined again with the root in the middle.  The
+     * elements of the later tree replace the equal ones of the earlier
+     * tree, or add their counts in a multiset tree.
+     */
+    private class UnionTask extends RecursiveTask<BSTNode<T>> {
+        private static final long serialVersionUID = 1L;
+
+        private final BSTNode<T> earlier;
+        private final BSTNode<T> later;
+
+        UnionTask(BSTNode<T> earlier, BSTNode<T> later) {
+            this.earlier = earlier;
+            this.later = later;
+        }
+
+        @Override
+        protected BSTNode<T> compute() {
+            if (earlier == null)
+                return later;
+            if (later == null)
+                return earlier;
+
+            boolean parallel = size(earlier) + size(later) > PARALLEL_BUILD_THRESHOLD;
+            Split<T> parts = new Split<T>();
+            splitAt(later, earlier.data, parts);
+            if (parts.equal != null) {
+                if (multiset)
+                    earlier.count += parts.equal.count;
+                else
+                    earlier.data = parts.equal.data;
+            }
+
+            UnionTask lower = new UnionTask(earlier.left, parts.less);
+            UnionTask upper = new UnionTask(earlier.right, parts.greater);
+            BSTNode<T> left;
+            BSTNode<T> right;
+            if (parallel) {
+                lower.fork();
+                right = upper.compute();
+                left = lower.join();
+            } else {
+                left = lower.compute();
+                right = upper.compute();
+            }
+            return joinMiddle(left, earlier, right);
+        }
+    }
+
+    /**
+     * Removes one occurrence of data from the tree.
+     *
+     * @param data the data element to remove
+     * @return true if the tree contained data
+     */
+    private boolean removeOccurrence(T data) {
+        int depth = 0;
+        BSTNode<T> parent = null;
+        BSTNode<T> here = root;
+        while (here != null) {
+            int cmp = data.compareTo(here.data);
+            depth++;
+            if (cmp == 0)
+                break;
+            enterPath(here, -1);
+            parent = here;
+            here = (cmp < 0) ? here.left : here.right;
+        }
+        if (here == null) {
+            abandonPath(data, -1);
+            if (stats != null)
+                stats.removed(depth, false);
+            return false; // not in the tree
+        }
+        if (here.count > 1) {
+            here.count--;
+            here.size--;
+            modCount++;
+            root = (balancing == Balancing.SPLAY) ? splay(here) : rebalancePath(0, root);
+            if (stats != null)
+                stats.removed(depth, false);
+            return true;
+        }
+
+        // remove here node, replace it by the left or right subtree or
+        // by the join of both subtrees
+        BSTNode<T> replacement;
+        if (here.right == null) {
+            replacement = here.left;
+        } else if (here.left == null) {
+            replacement = here.right;
+        } else {
+            replacement = joinSubtrees(here.left, here.right);
+            // the new node takes over the position of the removed one
+            if (balancing == Balancing.NONE)
+                update(replacement);
+            else
+                path.push(replacement);
+        }
+        replaceChild(parent, here, replacement);
+        nodes--;
+        modCount++;
+        if (balancing != Balancing.SPLAY)
+            root = rebalancePath(0, root);
+        else if (!path.isEmpty())
+            root = splay(path.pop()); // the parent of the removed node, or its replacement
+        if (stats != null)
+            stats.removed(depth, true);
+        return true;
+    }
+
+    /**
+     * Join the leftRoot and the rightRoot trees.
+     * 
+     * Find the leftmost node from the rightRoot tree. Remove that node 
+     * and make it the root of the joined tree. Under the new root put the 
+     * left and the right subtrees.  The caller balances the new root.
+     * 
+     * @param leftRoot the root node of the left tree
+     * @param rightRoot the root node of the right tree
+     * @return the new root of the joined trees
+     */
+    private BSTNode<T> joinSubtrees(BSTNode<T> leftRoot, BSTNode<T> rightRoot) {
+        // newRoot is the leftmost of the right subtree
+        BSTNode<T> newRoot = leftmost(rightRoot);
+        rightRoot = removeLeftmost(rightRoot);
+
+        newRoot.left = leftRoot;
+        newRoot.right = rightRoot;
+        return newRoot;
+    }
+
+    private static <T extends Comparable<T>> BSTNode<T> leftmost(BSTNode<T> node) {
+        while (node.left != null) {
+            node = node.left;
+        }
+        return node;
+    }
+
+    /**
+     * Unlinks the leftmost node of a subtree, its right subtree takes its
+     * place.  An AVL subtree is rebalanced on the way back up, using the
+     * path above the path of the caller.
+     *
+     * @param subtree the root of the subtree, not null
+     * @return the new root of the subtree without its leftmost node
+     */
+    private BSTNode<T> removeLeftmost(BSTNode<T> subtree) {
+        // the path of the caller stays below floor
+        int floor = path.size();
+
+        BSTNode<T> parent = null;
+        BSTNode<T> leftmost = subtree;
+        while (leftmost.left != null) {
+            if (balancing != Balancing.NONE)
+                path.push(leftmost);
+            parent = leftmost;
+            leftmost = leftmost.left;
+        }
+        if (balancing == Balancing.NONE) {
+            // the nodes above the leftmost one lose all its occurrences
+            for (BSTNode<T> node = subtree; node != leftmost; node = node.left)
+                node.size -= leftmost.count;
+        }
+
+        if (parent == null)
+            return leftmost.right;
+        parent.left = leftmost.right;
+        return rebalancePath(floor, subtree);
+    }
+
+    /**
+     * Joins two subtrees with a middle node whose element is greater than
+     * the elements of left and smaller than those of right.  An AVL tree
+     * hangs the lower subtree and the middle node on the spine of the
+     * higher one at the level where the heights match, then balances the
+     * spine on the way back up, so it costs O(height difference).  A tree
+     * which is not balanced just puts the middle node on top.
+     *
+     * @param left the subtree of the smaller elements, may be null
+     * @param middle the middle node, its links are replaced
+     * @param right the subtree of the greater elements, may be null
+     * @return the root of the joined tree
+     */
+    private BSTNode<T> joinMiddle(BSTNode<T> left, BSTNode<T> middle, BSTNode<T> right) {
+        if (balancing == Balancing.AVL) {
+            int leftHeight = height(left);
+            int rightHeight = height(right);
+            if (leftHeight > rightHeight + 1) {
+                left.right = joinMiddle(left.right, middle, right);
+                return balance(left);
+            }
+            if (rightHeight > leftHeight + 1) {
+                right.left = joinMiddle(left, middle, right.left);
+                return balance(right);
+            }
+        }
+        middle.left = left;
+        middle.right = right;
+        update(middle);
+        return middle;
+    }
+
+    /**
+     * The result of splitting a subtree at a key.
+     */
+    private static class Split<T extends Comparable<T>> {
+        /** The subtree of the elements smaller than the key. */
+        BSTNode<T> less;
+        /** The node holding the key, unlinked, or null. */
+        BSTNode<T> equal;
+        /** The subtree of the elements greater than the key. */
+        BSTNode<T> greater;
+    }
+
+    /**
+     * Splits a subtree at key into the elements smaller than key, the node
+     * equal to key and the elements greater than key.  An AVL subtree is
+     * split recursively: on the way back up every node on the search path
+     * is joined with the part of the split on its side, which keeps both
+     * parts balanced in O(log n).  A subtree which is not balanced is split
+     * top down without recursion, every node on the search path is hung
+     * under the last node of its side.
+     *
+     * @param node the root of the subtree
+     * @param key the key to split at
+     * @param out receives the parts
+     */
+    private void splitAt(BSTNode<T> node, T key, Split<T> out) {
+        if (balancing == Balancing.AVL) {
+            if (node == null) {
+                out.less = null;
+                out.equal = null;
+                out.greater = null;
+                return;
+            }
+            int cmp = key.compareTo(node.data);
+            if (cmp < 0) {
+                BSTNode<T> right = node.right;
+                splitAt(node.left, key, out);
+                out.greater = joinMiddle(out.greater, node, right);
+            } else if (cmp > 0) {
+                BSTNode<T> left = node.left;
+                splitAt(node.right, key, out);
+                out.less = joinMiddle(left, node, out.less);
+            } else {
+                out.less = node.left;
+                out.equal = node;
+                out.greater = node.right;
+                node.left = null;
+                node.right = null;
+                update(node);
+            }
+            return;
+        }
+
+        // the nodes on the search path change their subtrees, their sizes
+        // are updated bottom up at the end
+        List<BSTNode<T>> changed = new ArrayList<BSTNode<T>>();
+        BSTNode<T> lessTail = null;
+        BSTNode<T> greaterTail = null;
+        out.less = null;
+        out.equal = null;
+        out.greater = null;
+        BSTNode<T> remaining = null;
+        while (node != null) {
+            int cmp = key.compareTo(node.data);
+            if (cmp == 0) {
+                out.equal = node;
+                remaining = node;
+                break;
+            }
+            changed.add(node);
+            if (cmp > 0) {
+                if (lessTail == null)
+                    out.less = node;
+                else
+                    lessTail.right = node;
+                lessTail = node;
+                node = node.right;
+            } else {
+                if (greaterTail == null)
+                    out.greater = node;
+                else
+                    greaterTail.left = node;
+                greaterTail = node;
+                node = node.left;
+            }
+        }
+
+        // the children of the equal node close both sides
+        BSTNode<T> lessRest = (remaining == null) ? null : remaining.left;
+        BSTNode<T> greaterRest = (remaining == null) ? null : remaining.right;
+        if (lessTail == null)
+            out.less = lessRest;
+        else
+            lessTail.right = lessRest;
+        if (greaterTail == null)
+            out.greater = greaterRest;
+        else
+            greaterTail.left = greaterRest;
+        if (remaining != null) {
+            remaining.left = null;
+            remaining.right = null;
+            update(remaining);
+        }
+        for (int i = changed.size() - 1; i >= 0; i--) {
+            update(changed.get(i));
+        }
+    }
+
+    /**
+     * Counts the nodes of a subtree without recursion.
+     */
+    private static int countNodes(BSTNode<?> root) {
+        int count = 0;
+        ArrayDeque<BSTNode<?>> stack = new ArrayDeque<BSTNode<?>>();
+        if (root != null)
+            stack.push(root);
+        while (!stack.isEmpty()) {
+            BSTNode<?> node = stack.pop();
+            count++;
+            if (node.left != null)
+                stack.push(node.left);
+            if (node.right != null)
+                stack.push(node.right);
+        }
+        return count;
+    }
+
+    /**
+     * Links newChild into the place of oldChild under parent.  A null parent
+     * means oldChild is the root of the tree.
+     *
+     * @param parent the parent of oldChild or null
+     * @param oldChild the node being replaced
+     * @param newChild the replacement node, may be null
+     */
+    private void replaceChild(BSTNode<T> parent, BSTNode<T> oldChild, BSTNode<T> newChild) {
+        if (parent == null)
+            root = newChild;
+        else if (parent.left == oldChild)
+            parent.left = newChild;
+        else
+            parent.right = newChild;
+    }
+
+    /**
+     * Records a node on the way down to an element which is added or
+     * removed, so that the size of its subtree changes by delta.  AVL and
+     * splay trees push the node on the path, which is updated and balanced
+     * or splayed bottom up later.  A tree which is not balanced has no rotations to
+     * do, so it changes the size right away instead.
+     *
+     * @param node the node on the way down
+     * @param delta 1 for an add, -1 for a remove
+     */
+    private void enterPath(BSTNode<T> node, int delta) {
+        if (balancing == Balancing.NONE)
+            node.size += delta;
+        else
+            path.push(node);
+    }
+
+    /**
+     * Undoes enterPath() when the element was not added or removed after
+     * all.  A tree which is not balanced descends to data again to revert
+     * the sizes.  A splay tree splays the last node of the search.
+     *
+     * @param data the element which was looked for
+     * @param delta the delta given to enterPath()
+     */
+    private void abandonPath(T data, int delta) {
+        if (balancing == Balancing.SPLAY && !path.isEmpty()) {
+            root = splay(path.pop());
+            return;
+        }
+        if (balancing != Balancing.NONE) {
+            path.clear();
+            return;
+        }
+        int comparisons = 0;
+        BSTNode<T> here = root;
+        while (here != null) {
+            int cmp = data.compareTo(here.data);
+            comparisons++;
+            if (cmp == 0)
+                break;
+            here.size -= delta;
+            here = (cmp < 0) ? here.left : here.right;
+        }
+        if (stats != null)
+            stats.compared(comparisons);
+    }
+
+    /**
+     * Updates and balances the nodes on the path bottom up after an element
+     * was added or removed under the top of the path.  The nodes above
+     * floor are popped from the path, the top one being the first one
+     * pushed after floor.
+     *
+     * @param floor the number of path nodes which belong to the caller
+     * @param top the root of the subtree containing the path
+     * @return the new root of the subtree
+     */
+    private BSTNode<T> rebalancePath(int floor, BSTNode<T> top) {
+        while (path.size() > floor) {
+            BSTNode<T> node = path.pop();
+            BSTNode<T> balanced = balance(node);
+
+            if (path.size() == floor)
+                return balanced;
+            BSTNode<T> parent = path.peek();
+            if (balanced != node) {
+                if (parent.left == node)
+                    parent.left = balanced;
+                else
+                    parent.right = balanced;
+            }
+        }
+        return top;
+    }
+
+    /**
+     * Updates the height and size of node after one of its subtrees
+     * changed, then restores the AVL property if one of them grew or shrank
+     * by at most one level.
+     *
+     * @param node the root of the subtree to balance
+     * @return the new root of the subtree
+     */
+    private BSTNode<T> balance(BSTNode<T> node) {
+        update(node);
+        if (balancing != Balancing.AVL)
+            return node; // a splay tree only rotates when it splays
+        int diff = height(node.left) - height(node.right);
+        if (diff > 1) {
+            // left heavy, a left-right case needs a rotation of the child first
+            if (height(node.left.left) < height(node.left.right))
+                node.left = rotateLeft(node.left);
+            return rotateRight(node);
+        } else if (diff < -1) {
+            // right heavy, a right-left case needs a rotation of the child first
+            if (height(node.right.right) < height(node.right.left))
+                node.right = rotateRight(node.right);
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    /**
+     * Moves node to the root with the splay rotations, using the path from
+     * the root down to its parent, which it empties.  Rotating a node with
+     * its grandparent in the same direction first (zig-zig) roughly halves
+     * the depth of every node on the path, which gives the amortized
+     * O(log n) cost.  The sizes of the path nodes are recomputed on the
+     * way, so they may be stale when the splay starts.
+     *
+     * @param node the node to splay, its subtrees are up to date
+     * @return node, the new root of the tree
+     */
+    private BSTNode<T> splay(BSTNode<T> node) {
+        update(node);
+        if (!path.isEmpty())
+            modCount++;
+        while (!path.isEmpty()) {
+            BSTNode<T> parent = path.pop();
+            if (path.isEmpty()) {
+                // zig: parent is the root
+                if (parent.left == node)
+                    rotateRight(parent);
+                else
+                    rotateLeft(parent);
+                break;
+            }
+
+            BSTNode<T> grand = path.pop();
+            boolean leftChild = (parent.left == node);
+            if (leftChild == (grand.left == parent)) {
+                // zig-zig: rotate the grandparent first, then the parent
+                if (leftChild)
+                    rotateRight(rotateRight(grand));
+                else
+                    rotateLeft(rotateLeft(grand));
+            } else if (leftChild) {
+                // zig-zag: node goes up twice, between parent and grandparent
+                grand.right = rotateRight(parent);
+                rotateLeft(grand);
+            } else {
+                grand.left = rotateLeft(parent);
+                rotateRight(grand);
+            }
+            BSTNode<T> great = path.peek();
+            if (great != null) {
+                if (great.left == grand)
+                    great.left = node;
+                else
+                    great.right = node;
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Rotates the subtree to the right, its left child becomes the root.
+     *
+     * @param node the root of the subtree
+     * @return the new root of the subtree
+     */
+    private BSTNode<T> rotateRight(BSTNode<T> node) {
+        BSTNode<T> pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    /**
+     * Rotates the subtree to the left, its right child becomes the root.
+     *
+     * @param node the root of the subtree
+     * @return the new root of the subtree
+     */
+    private BSTNode<T> rotateLeft(BSTNode<T> node) {
+        BSTNode<T> pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private static int height(BSTNode<?> node) {
+        return (node == null) ? 0 : node.height;
+    }
+
+    private static int size(BSTNode<?> node) {
+        return (node == null) ? 0 : node.size;
+    }
+
+    /**
+     * Recomputes the height and the size of node from its children.
+     */
+    private static void update(BSTNode<?> node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+        node.size = node.count + size(node.left) + size(node.right);
+    }
+    
+    @Override
+    public String toString() {
+        return toString(root);
+    }
+    
+    private String toString(BSTNode<T> node) {
+        // in-order walk with an explicit stack, one line per node
+        StringBuilder s = new StringBuilder();
+        ArrayDeque<BSTNode<T>> stack = new ArrayDeque<BSTNode<T>>();
+        while (node != null || !stack.isEmpty()) {
+            while (node != null) {
+                stack.push(node);
+                node = node.left;
+            }
+            node = stack.pop();
+            s.append('\n');
+            if (node == root)
+                s.append("root ");
+            s.append(node.toString()).append('\n');
+            node = node.right;
+        }
+        return s.toString();
+    }
+}
@@ -0,0 +1,284 @@
+package bst;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Locale;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Statistics of the operations on one BST: how many adds, removes and
+ * searches it did, how many comparisons they took, how deep they went and
+ * how many nodes they created and unlinked.  Together with the size and
+ * the height of the tree they tell why a tree is slow, for example that
+ * sorted input degraded it into a list.
+ *
+ * A tree only records statistics after BST.enableStats(), until then it
+ * checks one null field per operation.  The counters are plain fields
+ * written by the thread using the tree, so another thread, like a JMX
+ * client, may read slightly stale values.
+ * Reading them never walks the tree, so polling them costs O(1); only
+ * computeHeight() walks a tree which does not keep its height.
+ */
+public class BSTStats implements BSTStatsMBean {
+    /**
+     * Bucket 0 holds the depth 0 and bucket k the depths in [2^(k-1), 2^k),
+     * so 33 buckets hold every non-negative int.
+     */
+    private static final int BUCKETS = 33;
+
+    private final BST<?> tree;
+    private long searches;
+    private long adds;
+    private long removes;
+    private long comparisons;
+    private long allocatedNodes;
+    private long freedNodes;
+    private long descents;
+    private long depthSum;
+    private int maxDepth;
+    private final long[] depthHistogram = new long[BUCKETS];
+    /** The name registered with the MBean server, null if not registered. */
+    private ObjectName registeredName;
+
+    BSTStats(BST<?> tree) {
+        this.tree = tree;
+    }
+
+    /**
+     * Records a lookup which visited depth nodes, comparing data to each
+     * of them.
+     *
+     * @param depth the number of nodes visited
+     */
+    void searched(int depth) {
+        searches++;
+        descended(depth);
+    }
+
+    /**
+     * Records an add which visited depth nodes.
+     *
+     * @param depth the number of nodes visited
+     * @param allocated true if the add created a node
+     */
+    void added(int depth, boolean allocated) {
+        adds++;
+        descended(depth);
+        if (allocated)
+            allocatedNodes++;
+    }
+
+    /**
+     * Records the removal of one occurrence which visited depth nodes.
+     *
+     * @param depth the number of nodes visited
+     * @param freed true if the removal unlinked a node
+     */
+    void removed(int depth, boolean freed) {
+        removes++;
+        descended(depth);
+        if (freed)
+            freedNodes++;
+    }
+
+    /**
+     * Records the nodes unlinked by an operation other than remove.
+     *
+     * @param count the number of nodes unlinked
+     */
+    void freed(int count) {
+        freedNodes += count;
+    }
+
+    /**
+     * Records comparisons made outside of a descent from the root.
+     *
+     * @param count the number of comparisons
+     */
+    void compared(long count) {
+        comparisons += count;
+    }
+
+    private void descended(int depth) {
+        comparisons += depth;
+        descents++;
+        depthSum += depth;
+        if (depth > maxDepth)
+            maxDepth = depth;
+        depthHistogram[32 - Integer.numberOfLeadingZeros(depth)]++;
+    }
+
+    /**
+     * Registers these statistics with the platform MBean server under the
+     * name "BST:type=BSTStats,name=<i>name</i>".  The server keeps them and
+     * their tree reachable until unregister() is called.
+     *
+     * @param name the name telling the tree apart from other trees
+     * @return the name of the registered MBean
+     * @throws JMException if the MBean cannot be registered, for example
+     *         because the name is already used
+     * @throws IllegalStateException if these statistics are registered
+     *         already
+     */
+    public ObjectName register(String name) throws JMException {
+        if (registeredName != null)
+            throw new IllegalStateException("Statistics are already registered as " + registeredName);
+        ObjectName objectName = new ObjectName("BST:type=BSTStats,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        registeredName = objectName;
+        return objectName;
+    }
+
+    /**
+     * Removes these statistics from the platform MBean server, so their
+     * name can be registered again and the tree can be collected.  Does
+     * nothing if they are not registered.
+     *
+     * @throws JMException if the MBean cannot be unregistered
+     */
+    public void unregister() throws JMException {
+        if (registeredName == null)
+            return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+        } catch (InstanceNotFoundException e) {
+            // someone else unregistered it already
+        } finally {
+            registeredName = null;
+        }
+    }
+
+    @Override
+    public long getSearches() {
+        return searches;
+    }
+
+    @Override
+    public long getAdds() {
+        return adds;
+    }
+
+    @Override
+    public long getRemoves() {
+        return removes;
+    }
+
+    @Override
+    public long getComparisons() {
+        return comparisons;
+    }
+
+    @Override
+    public double getComparisonsPerOperation() {
+        long operations = searches + adds + removes;
+        return (operations == 0) ? 0 : (double) comparisons / operations;
+    }
+
+    @Override
+    public long getAllocatedNodes() {
+        return allocatedNodes;
+    }
+
+    @Override
+    public long getFreedNodes() {
+        return freedNodes;
+    }
+
+    @Override
+    public double getAverageDepth() {
+        return (descents == 0) ? 0 : (double) depthSum / descents;
+    }
+
+    @Override
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    @Override
+    public long[] getDepthHistogram() {
+        // trailing empty buckets are left out
+        int length = BUCKETS;
+        while (length > 1 && depthHistogram[length - 1] == 0)
+            length--;
+        return Arrays.copyOf(depthHistogram, length);
+    }
+
+    @Override
+    public int getSize() {
+        return tree.size();
+    }
+
+    @Override
+    public int getNodes() {
+        return tree.nodeCount();
+    }
+
+    /**
+     * An AVL tree keeps its height in its root.  Any other tree would have
+     * to be walked, so its height is unknown here, see computeHeight().
+     */
+    @Override
+    public int getHeight() {
+        if (tree.getBalancing() == BST.Balancing.AVL)
+            return tree.height();
+        return -1;
+    }
+
+    /**
+     * Walks a tree which does not keep its height, in O(n) and while the
+     * thread using it may be changing it, so the result may be wrong if
+     * the tree is not at rest.
+     */
+    @Override
+    public int computeHeight() {
+        return tree.height();
+    }
+
+    @Override
+    public void reset() {
+        searches = 0;
+        adds = 0;
+        removes = 0;
+        comparisons = 0;
+        allocatedNodes = 0;
+        freedNodes = 0;
+        descents = 0;
+        depthSum = 0;
+        maxDepth = 0;
+        Arrays.fill(depthHistogram, 0);
+    }
+
+    @Override
+    public String dump() {
+        StringBuilder text = new StringBuilder();
+        text.append("size: ").append(getSize()).append('\n');
+        text.append("nodes: ").append(getNodes()).append('\n');
+        int height = getHeight();
+        text.append("height: ").append((height < 0) ? "unknown" : Integer.toString(height)).append('\n');
+        text.append("searches: ").append(searches).append('\n');
+        text.append("adds: ").append(adds).append('\n');
+        text.append("removes: ").append(removes).append('\n');
+        text.append("comparisons: ").append(comparisons).append('\n');
+        text.append("comparisons per operation: ")
+                .append(String.format(Locale.ROOT, "%.2f", getComparisonsPerOperation())).append('\n');
+        text.append("allocated nodes: ").append(allocatedNodes).append('\n');
+        text.append("freed nodes: ").append(freedNodes).append('\n');
+        text.append("average depth: ").append(String.format(Locale.ROOT, "%.2f", getAverageDepth())).append('\n');
+        text.append("max depth: ").append(maxDepth).append('\n');
+        text.append("depth histogram:\n");
+        long[] histogram = getDepthHistogram();
+        for (int k = 0; k < histogram.length; k++) {
+            String bucket = (k <= 1) ? Integer.toString(k) : (1L << (k - 1)) + "-" + ((1L << k) - 1);
+            text.append("  ").append(bucket).append(": ").append(histogram[k]).append('\n');
+        }
+        return text.toString();
+    }
+
+    @Override
+    public String toString() {
+        return dump();
+    }
+}
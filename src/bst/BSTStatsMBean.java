@@ -0,0 +1,78 @@
+package bst;
+
+/**
+ * Management interface of BSTStats, the statistics of the operations on
+ * one BST.
+ */
+public interface BSTStatsMBean {
+    /** @return the number of lookups: contains, count, navigation and rank queries */
+    long getSearches();
+
+    /** @return the number of add calls */
+    long getAdds();
+
+    /** @return the number of removals of one occurrence, found or not */
+    long getRemoves();
+
+    /** @return the number of element comparisons made by the operations */
+    long getComparisons();
+
+    /** @return the comparisons per add, remove or search */
+    double getComparisonsPerOperation();
+
+    /** @return the number of nodes created by add */
+    long getAllocatedNodes();
+
+    /** @return the number of nodes unlinked by remove and removeAll */
+    long getFreedNodes();
+
+    /** @return the mean number of nodes visited by a descent from the root */
+    double getAverageDepth();
+
+    /**
+     * @return the largest number of nodes visited by a descent from the
+     *         root since the last reset, which is not the current height
+     */
+    int getMaxDepth();
+
+    /**
+     * Returns the descent depths in power of two buckets: element 0
+     * counts the descents of depth 0, element k those of a depth from
+     * 2^(k-1) to 2^k - 1.
+     *
+     * @return the depth histogram
+     */
+    long[] getDepthHistogram();
+
+    /** @return the current number of elements of the tree */
+    int getSize();
+
+    /** @return the current number of nodes of the tree */
+    int getNodes();
+
+    /**
+     * @return the current height of an AVL tree, -1 for other trees,
+     *         which do not keep their height
+     */
+    int getHeight();
+
+    /**
+     * Returns the current height of the tree, walking it in O(n) if it
+     * does not keep its height.
+     *
+     * @return the number of nodes on the longest path from the root
+     */
+    int computeHeight();
+
+    /**
+     * Sets all the counters back to zero.
+     */
+    void reset();
+
+    /**
+     * Formats the statistics as text, one value per line.
+     *
+     * @return the statistics as text
+     */
+    String dump();
+}
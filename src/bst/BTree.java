@@ -0,0 +1,500 @@
+package bst;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * B+-tree set.  Every node holds up to fanout - 1 keys in an array, so a
+ * lookup visits log(n) / log(fanout) nodes instead of the log2(n) nodes of
+ * a BST, and most of its comparisons are a binary search within one node.
+ * The elements are kept in the leaves, which are linked in ascending order
+ * so in-order iteration and range scans walk from leaf to leaf without
+ * going back up the tree.  The inner nodes only hold separators: the first
+ * key of every subtree but the first.
+ *
+ * Every node except the root is at least half full.  A node which
+ * overflows on add is split in two, a node which underflows on remove
+ * borrows a key from a sibling or is merged with it.
+ *
+ * Like a BST which is not a multiset, the tree holds equal elements once.
+ *
+ * @param <T> the element type
+ */
+public class BTree<T extends Comparable<T>> implements Iterable<T> {
+    /** The default fanout, large enough to make the tree shallow, small enough to search a node quickly. */
+    public static final int DEFAULT_FANOUT = 64;
+
+    /**
+     * Tree node.  A leaf holds size elements, an inner node size separators
+     * and size + 1 children.  The arrays have room for one key more than
+     * allowed, so a node is split after the insertion which overflows it.
+     */
+    private static final class Node {
+        final Object[] keys;
+        final Node[] children;
+        /** The next leaf in ascending order, null for the last leaf and inner nodes. */
+        Node next;
+        int size;
+
+        Node(int maxKeys, boolean leaf) {
+            keys = new Object[maxKeys + 1];
+            children = leaf ? null : new Node[maxKeys + 2];
+        }
+
+        boolean isLeaf() {
+            return children == null;
+        }
+    }
+
+    private final int fanout;
+    private final int maxKeys;
+    private final int minKeys;
+    private Node root;
+    private int size;
+    private int height = 1;
+    private int modCount;
+    /** The first key of the node split off by the last insert, which goes up to the parent. */
+    private Object promoted;
+
+    /**
+     * Creates an empty tree with the default fanout.
+     */
+    public BTree() {
+        this(DEFAULT_FANOUT);
+    }
+
+    /**
+     * Creates an empty tree with the given fanout.
+     *
+     * @param fanout the maximum number of children of an inner node, at
+     *        least 3
+     */
+    public BTree(int fanout) {
+        if (fanout < 3)
+            throw new IllegalArgumentException("Fanout must be at least 3: " + fanout);
+        this.fanout = fanout;
+        maxKeys = fanout - 1;
+        minKeys = maxKeys / 2;
+        root = new Node(maxKeys, true);
+    }
+
+    /**
+     * Returns the fanout of this tree.
+     *
+     * @return the maximum number of children of an inner node
+     */
+    public int getFanout() {
+        return fanout;
+    }
+
+    /**
+     * Returns the number of elements in the tree.
+     *
+     * @return the number of elements
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the height of the tree, the number of nodes on a path from
+     * the root to a leaf, which is the same for all the leaves.
+     *
+     * @return the height of the tree, 1 if it is empty
+     */
+    public int height() {
+        return height;
+    }
+
+    /**
+     * Returns true if the tree contains data.
+     *
+     * @param data the element to look for
+     * @return true if data is in the tree
+     */
+    public boolean contains(T data) {
+        if (data == null)
+            throw new IllegalArgumentException("Cannot look for nulls");
+        Node leaf = findLeaf(data);
+        return Arrays.binarySearch(leaf.keys, 0, leaf.size, data) >= 0;
+    }
+
+    /**
+     * Returns the smallest element.
+     *
+     * @return the smallest element
+     * @throws NoSuchElementException if the tree is empty
+     */
+    public T min() {
+        if (size == 0)
+            throw new NoSuchElementException("Tree is empty");
+        return key(firstLeaf(), 0);
+    }
+
+    /**
+     * Returns the largest element.
+     *
+     * @return the largest element
+     * @throws NoSuchElementException if the tree is empty
+     */
+    public T max() {
+        if (size == 0)
+            throw new NoSuchElementException("Tree is empty");
+        Node node = root;
+        while (!node.isLeaf()) {
+            node = node.children[node.size];
+        }
+        return key(node, node.size - 1);
+    }
+
+    /**
+     * Adds data to the tree, if it is not there yet.
+     *
+     * @param data the element to add
+     * @return true if the tree did not contain data
+     */
+    public boolean add(T data) {
+        if (data == null)
+            throw new IllegalArgumentException("Cannot add nulls");
+
+        int before = size;
+        Node split = insert(root, data);
+        if (split != null) {
+            // the root was split, the tree grows by a new root above it
+            Node newRoot = new Node(maxKeys, false);
+            newRoot.keys[0] = promoted;
+            newRoot.children[0] = root;
+            newRoot.children[1] = split;
+            newRoot.size = 1;
+            root = newRoot;
+            height++;
+        }
+        promoted = null;
+        if (size == before)
+            return false;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Removes data from the tree.
+     *
+     * @param data the element to remove
+     * @return true if the tree contained data
+     */
+    public boolean remove(T data) {
+        if (data == null)
+            throw new IllegalArgumentException("Cannot remove nulls");
+
+        if (!delete(root, data))
+            return false;
+        if (!root.isLeaf() && root.size == 0) {
+            // the root lost its last separator, its only child replaces it
+            root = root.children[0];
+            height--;
+        }
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Returns a list containing the elements in ascending order.
+     *
+     * @return a list of the elements
+     */
+    public LinkedList<T> elements() {
+        LinkedList<T> list = new LinkedList<T>();
+        for (T data : this) {
+            list.add(data);
+        }
+        return list;
+    }
+
+    /**
+     * Returns the elements in ascending order.  The iterator walks the
+     * linked leaves, and fails if the tree is modified while it is in use.
+     *
+     * @return an iterator over the elements
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new LeafIterator(firstLeaf(), 0, null);
+    }
+
+    /**
+     * Returns the elements between lo and hi, both included, in ascending
+     * order.  The iterator descends once to the leaf of lo and then scans
+     * the linked leaves until it passes hi, so going through k elements
+     * costs O(log n + k).  It fails if the tree is modified while it is in
+     * use.
+     *
+     * @param lo the lower bound of the range
+     * @param hi the upper bound of the range
+     * @return the tree values in the range
+     */
+    public Iterable<T> range(final T lo, final T hi) {
+        if (lo == null || hi == null)
+            throw new IllegalArgumentException("Range bounds are required");
+
+        return new Iterable<T>() {
+            @Override
+            public Iterator<T> iterator() {
+                Node leaf = findLeaf(lo);
+                int index = Arrays.binarySearch(leaf.keys, 0, leaf.size, lo);
+                return new LeafIterator(leaf, (index >= 0) ? index : -(index + 1), hi);
+            }
+        };
+    }
+
+    /**
+     * Iterator over the linked leaves, from an index of a leaf up to an
+     * optional upper bound.
+     */
+    private class LeafIterator implements Iterator<T> {
+        private final int expectedModCount = modCount;
+        private final T hi;
+        private Node leaf;
+        private int index;
+
+        LeafIterator(Node leaf, int index, T hi) {
+            this.leaf = leaf;
+            this.index = index;
+            this.hi = hi;
+            skipToElement();
+        }
+
+        /**
+         * Moves to the next leaf when the index is past the end of the
+         * current one, and ends the iteration after hi.
+         */
+        private void skipToElement() {
+            while (leaf != null && index == leaf.size) {
+                leaf = leaf.next;
+                index = 0;
+            }
+            if (leaf != null && hi != null) {
+                T data = key(leaf, index);
+                if (data.compareTo(hi) > 0)
+                    leaf = null;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return leaf != null;
+        }
+
+        @Override
+        public T next() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (leaf == null)
+                throw new NoSuchElementException();
+            T data = key(leaf, index++);
+            skipToElement();
+            return data;
+        }
+    }
+
+    private Node findLeaf(T data) {
+        Node node = root;
+        while (!node.isLeaf()) {
+            node = node.children[childIndex(node, data)];
+        }
+        return node;
+    }
+
+    private Node firstLeaf() {
+        Node node = root;
+        while (!node.isLeaf()) {
+            node = node.children[0];
+        }
+        return node;
+    }
+
+    /**
+     * Returns the index of the child of an inner node whose subtree may hold
+     * data.  A key equal to a separator is in the subtree on its right.
+     */
+    private static int childIndex(Node node, Object data) {
+        int index = Arrays.binarySearch(node.keys, 0, node.size, data);
+        return (index >= 0) ? index + 1 : -(index + 1);
+    }
+
+    /**
+     * Adds data to the subtree of node.
+     *
+     * @return the new right sibling if node was split, with its first key
+     *         in promoted, null otherwise
+     */
+    private Node insert(Node node, T data) {
+        if (node.isLeaf()) {
+            int index = Arrays.binarySearch(node.keys, 0, node.size, data);
+            if (index >= 0)
+                return null;
+            index = -(index + 1);
+            System.arraycopy(node.keys, index, node.keys, index + 1, node.size - index);
+            node.keys[index] = data;
+            node.size++;
+            size++;
+            return (node.size > maxKeys) ? splitLeaf(node) : null;
+        }
+
+        int index = childIndex(node, data);
+        Node split = insert(node.children[index], data);
+        if (split == null)
+            return null;
+        System.arraycopy(node.keys, index, node.keys, index + 1, node.size - index);
+        System.arraycopy(node.children, index + 1, node.children, index + 2, node.size - index);
+        node.keys[index] = promoted;
+        node.children[index + 1] = split;
+        node.size++;
+        return (node.size > maxKeys) ? splitInner(node) : null;
+    }
+
+    /**
+     * Moves the upper half of a full leaf to a new leaf linked after it.
+     */
+    private Node splitLeaf(Node node) {
+        int half = node.size / 2;
+        Node right = new Node(maxKeys, true);
+        right.size = node.size - half;
+        System.arraycopy(node.keys, half, right.keys, 0, right.size);
+        Arrays.fill(node.keys, half, node.size, null);
+        node.size = half;
+        right.next = node.next;
+        node.next = right;
+        promoted = right.keys[0];
+        return right;
+    }
+
+    /**
+     * Moves the upper half of a full inner node to a new node.  The middle
+     * separator goes up to the parent.
+     */
+    private Node splitInner(Node node) {
+        int half = node.size / 2;
+        Node right = new Node(maxKeys, false);
+        right.size = node.size - half - 1;
+        System.arraycopy(node.keys, half + 1, right.keys, 0, right.size);
+        System.arraycopy(node.children, half + 1, right.children, 0, right.size + 1);
+        promoted = node.keys[half];
+        Arrays.fill(node.keys, half, node.size, null);
+        Arrays.fill(node.children, half + 1, node.size + 1, null);
+        node.size = half;
+        return right;
+    }
+
+    /**
+     * Removes data from the subtree of node, and refills the child it was
+     * removed from if that child is less than half full.
+     *
+     * @return true if the subtree contained data
+     */
+    private boolean delete(Node node, T data) {
+        if (node.isLeaf()) {
+            int index = Arrays.binarySearch(node.keys, 0, node.size, data);
+            if (index < 0)
+                return false;
+            System.arraycopy(node.keys, index + 1, node.keys, index, node.size - index - 1);
+            node.keys[--node.size] = null;
+            size--;
+            // a separator equal to data still separates the subtrees
+            // correctly, it does not need to be replaced
+            return true;
+        }
+
+        int index = childIndex(node, data);
+        if (!delete(node.children[index], data))
+            return false;
+        if (node.children[index].size < minKeys)
+            refill(node, index);
+        return true;
+    }
+
+    /**
+     * Brings the child at index of parent back to the minimum number of
+     * keys, borrowing one from a sibling which has more, or else merging
+     * it with a sibling.
+     */
+    private void refill(Node parent, int index) {
+        if (index > 0 && parent.children[index - 1].size > minKeys)
+            borrowFromLeft(parent, index);
+        else if (index < parent.size && parent.children[index + 1].size > minKeys)
+            borrowFromRight(parent, index);
+        else if (index > 0)
+            merge(parent, index - 1);
+        else
+            merge(parent, index);
+    }
+
+    private void borrowFromLeft(Node parent, int index) {
+        Node node = parent.children[index];
+        Node left = parent.children[index - 1];
+        System.arraycopy(node.keys, 0, node.keys, 1, node.size);
+        if (node.isLeaf()) {
+            node.keys[0] = left.keys[left.size - 1];
+            parent.keys[index - 1] = node.keys[0];
+        } else {
+            // the separator comes down, the last key of the sibling goes up
+            System.arraycopy(node.children, 0, node.children, 1, node.size + 1);
+            node.keys[0] = parent.keys[index - 1];
+            node.children[0] = left.children[left.size];
+            left.children[left.size] = null;
+            parent.keys[index - 1] = left.keys[left.size - 1];
+        }
+        left.keys[--left.size] = null;
+        node.size++;
+    }
+
+    private void borrowFromRight(Node parent, int index) {
+        Node node = parent.children[index];
+        Node right = parent.children[index + 1];
+        if (node.isLeaf()) {
+            node.keys[node.size] = right.keys[0];
+            System.arraycopy(right.keys, 1, right.keys, 0, right.size - 1);
+            parent.keys[index] = right.keys[0];
+        } else {
+            // the separator comes down, the first key of the sibling goes up
+            node.keys[node.size] = parent.keys[index];
+            node.children[node.size + 1] = right.children[0];
+            parent.keys[index] = right.keys[0];
+            System.arraycopy(right.keys, 1, right.keys, 0, right.size - 1);
+            System.arraycopy(right.children, 1, right.children, 0, right.size);
+            right.children[right.size] = null;
+        }
+        right.keys[--right.size] = null;
+        node.size++;
+    }
+
+    /**
+     * Merges the child at index + 1 of parent into the child at index, and
+     * removes their separator from parent.
+     */
+    private void merge(Node parent, int index) {
+        Node left = parent.children[index];
+        Node right = parent.children[index + 1];
+        if (left.isLeaf()) {
+            System.arraycopy(right.keys, 0, left.keys, left.size, right.size);
+            left.size += right.size;
+            left.next = right.next;
+        } else {
+            left.keys[left.size] = parent.keys[index];
+            System.arraycopy(right.keys, 0, left.keys, left.size + 1, right.size);
+            System.arraycopy(right.children, 0, left.children, left.size + 1, right.size + 1);
+            left.size += right.size + 1;
+        }
+        System.arraycopy(parent.keys, index + 1, parent.keys, index, parent.size - index - 1);
+        System.arraycopy(parent.children, index + 2, parent.children, index + 1, parent.size - index - 1);
+        parent.keys[parent.size - 1] = null;
+        parent.children[parent.size] = null;
+        parent.size--;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T key(Node node, int index) {
+        return (T) node.keys[index];
+    }
+}
@@ -1,24 +1,29 @@
+package bst;
+
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.util.Scanner;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.PrimitiveIterator;
 
 /**
  * Main program for testing binary search trees. 
  */
 public class BstMain {
 
-    private BST<Integer> tree;
+    private IntBST tree;
+    private BTree<Integer> btree;
     private SortableList<Integer> list;
     private static boolean canceled = false;
     
     public static void main(String[] args) throws IOException {
-        BufferedReader input = null;
-        BufferedWriter output = null;
-        BufferedReader inputRemove = null;
+        FileChannel input = null;
+        IntWriter output = null;
+        FileChannel inputRemove = null;
 
         BstMain program = new BstMain();
         
@@ -34,7 +39,7 @@ public class BstMain {
             program.writeData(dataType, input, output);
             
             // Remove data from tree
-            if (dataType.equals("bst")) {
+            if (dataType.equals("bst") || dataType.equals("avl") || dataType.equals("btree")) {
                 // Get the file containing numbers to remove
                 inputRemove = getNumbersToRemove();
                 program.removeData(inputRemove, output);
@@ -62,15 +67,16 @@ public class BstMain {
      * dataType, then reads from the data structure and writes to the output
      * writer.
      * 
-     * @param dataType the data structure type, either "bst" or "list"
-     * @param input the input reader
+     * @param dataType the data structure type, either "bst", "avl", "btree",
+     *        "list" or "external"
+     * @param input the input channel
      * @param output the output writer
      * @throws IOException if the data read or write is failing
      */
-    void writeData(String dataType, BufferedReader input, BufferedWriter output) throws IOException {
-        if (dataType.equals("bst")) {
-            // sort data using BST
-            tree = new BST<Integer>();
+    void writeData(String dataType, ReadableByteChannel input, IntWriter output) throws IOException {
+        if (dataType.equals("bst") || dataType.equals("avl")) {
+            // sort data using BST, the avl tree is rebalanced as it grows
+            tree = new IntBST(dataType.equals("avl") ? BST.Balancing.AVL : BST.Balancing.NONE);
 
             // Read from file
             read(input, tree);
@@ -94,6 +100,16 @@ public class BstMain {
             output.write("Post-order:");
             output.newLine();
             write(output, tree, BST.Traversal.POST_ORDER);
+        } else if (dataType.equals("btree")) {
+            // sort data using a B+-tree, its elements are only kept in
+            // order in the leaves so there is no pre-order or post-order
+            btree = new BTree<Integer>();
+
+            read(input, btree);
+
+            output.write("In-order:");
+            output.newLine();
+            write(output, btree);
         } else if (dataType.equals("list")) {
             // sort data using list
             list = new SortableList<Integer>();
@@ -104,6 +120,12 @@ public class BstMain {
             output.write("Sorted list:");
             output.newLine();
             write(output, list.getSortedList());
+        } else if (dataType.equals("external")) {
+            // sort data in bounded chunks spilled to disk, so the input
+            // may be larger than the heap
+            output.write("Sorted list:");
+            output.newLine();
+            new ExternalSort().sort(input, new LineSink(output));
         }
     }
 
@@ -115,15 +137,21 @@ public class BstMain {
      * @param output where the tree contents after removal is written to
      * @throws IOException
      */
-    void removeData(BufferedReader input, BufferedWriter output) throws IOException {
-        // Read numbers to delete from tree
-        LinkedList<Integer> numbersToDelete = new LinkedList<Integer>();
-        read(input, numbersToDelete);
+    void removeData(ReadableByteChannel input, IntWriter output) throws IOException {
+        if (btree != null) {
+            IntReader.read(input, value -> btree.remove(value));
 
-        for (Integer value : numbersToDelete) {
-            tree.remove(value);
+            output.newLine();
+            output.newLine();
+            output.write("After delete:");
+            output.newLine();
+            write(output, btree);
+            return;
         }
 
+        // Read the numbers to delete, the tree removes the whole batch at once
+        tree.removeAll(IntReader.readAll(input));
+
         // System.out.println("Tree after remove is:");
         // System.out.println(tree.toString());
 
@@ -136,20 +164,20 @@ public class BstMain {
     }
 
     /**
-     * Prompts user for a file name and returns a reader from the file.
+     * Prompts user for a file name and returns a channel reading the file.
      * Repeats the prompts if the file does not exist or it cannot open 
      * the file.
      * 
-     * @return BufferedReader used for reading the user's input
+     * @return FileChannel used for reading the user's input
      * @throws IOException
      */
-    static BufferedReader getInput() throws IOException {
+    static FileChannel getInput() throws IOException {
         while (true) {
             // Prompt user for input file name
             String fileName = getLineFromUser("Enter the name of the input file:");
             try {
-                return new BufferedReader(new FileReader(fileName));
-            } catch (IOException e) {
+                return FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+            } catch (IOException | InvalidPathException e) {
                 System.err.println("File " + fileName + " does not exist or cannot be opened.");
             }
         }
@@ -158,15 +186,16 @@ public class BstMain {
     /**
      * Prompts user for file name and returns a writer to the file.
      * 
-     * @return Buffered writer used for writing into the output file
+     * @return IntWriter used for writing into the output file
      * @throws IOException
      */
-    static BufferedWriter getOutput() throws IOException {
+    static IntWriter getOutput() throws IOException {
         while (true) {
             String fileName = getLineFromUser("Enter the name of the output file:");
             try {
-                return new BufferedWriter(new FileWriter(fileName));
-            } catch (IOException e) {
+                return new IntWriter(FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+            } catch (IOException | InvalidPathException e) {
                 System.err.println("File " + fileName + " cannot be opened to write in it.");
             }
         }
@@ -176,16 +205,16 @@ public class BstMain {
      * Prompts the user for an input file name and returns the open file.
      * Prompts the user again if it cannot open the file.
      * 
-     * @return
+     * @return FileChannel used for reading the numbers to remove
      * @throws IOException
      */
-    static BufferedReader getNumbersToRemove() throws IOException {
+    static FileChannel getNumbersToRemove() throws IOException {
         while (true) {
             // Prompt user for input file name
             String fileName = getLineFromUser("Enter the name of the file with numbers to remove:");
             try {
-                return new BufferedReader(new FileReader(fileName));
-            } catch (IOException e) {
+                return FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+            } catch (IOException | InvalidPathException e) {
                 System.err.println("File " + fileName + " does not exist or cannot be opened.");
             }
         }
@@ -193,7 +222,7 @@ public class BstMain {
 
     /**
      * Prompts the user for a the data structure type until the user types 
-     * either "bst" or "list".
+     * either "bst", "avl", "btree", "list" or "external".
      * 
      * @return the data structure type
      * @throws IOException
@@ -201,8 +230,9 @@ public class BstMain {
     static String getDataStructure() throws IOException {
         while (true) {
             // Prompt user for input file name
-            String line = getLineFromUser("Enter the data structure (should be list or bst):");
-            if (line.equals("list") || line.equals("bst"))
+            String line = getLineFromUser("Enter the data structure (should be list, bst, avl, btree or external):");
+            if (line.equals("list") || line.equals("bst") || line.equals("avl") || line.equals("btree")
+                    || line.equals("external"))
                 return line;
         }
     }
@@ -231,38 +261,39 @@ public class BstMain {
      * Read from the input, parse it as integer and insert the values into
      * the given tree.
      * 
-     * @param input the input reader
+     * @param input the input channel
      * @param tree the tree where values are inserted
+     * @throws IOException if reading fails
+     * @throws NumberFormatException if the input has a token which is not an int
      */
-    static void read(BufferedReader input, BST<Integer> tree) {
-        Scanner sc = new Scanner(input);
-        try {
-            while (sc.hasNextInt()) {
-                Integer value = new Integer(sc.nextInt());
-                tree.add(value);
-            }
-        } finally {
-            sc.close();
-        }
+    static void read(ReadableByteChannel input, IntBST tree) throws IOException {
+        IntReader.read(input, tree::add);
     }
     
+    /**
+     * Read from the input, parse it as integers, and insert the values into
+     * the given B+-tree.
+     * 
+     * @param input the input channel
+     * @param tree the tree where values are inserted
+     * @throws IOException if reading fails
+     * @throws NumberFormatException if the input has a token which is not an int
+     */
+    static void read(ReadableByteChannel input, BTree<Integer> tree) throws IOException {
+        IntReader.read(input, value -> tree.add(value));
+    }
+
     /**
      * Read from the input, parse it as integers, and insert the values into
      * the given list.
      * 
-     * @param input the input reader
+     * @param input the input channel
      * @param list where values are inserted
+     * @throws IOException if reading fails
+     * @throws NumberFormatException if the input has a token which is not an int
      */
-    static void read(BufferedReader input, LinkedList<Integer> list) {
-        Scanner sc = new Scanner(input);
-        try {
-            while (sc.hasNextInt()) {
-                Integer value = new Integer(sc.nextInt());
-                list.add(value);
-            }
-        } finally {
-            sc.close();
-        }
+    static void read(ReadableByteChannel input, LinkedList<Integer> list) throws IOException {
+        IntReader.read(input, value -> list.add(value));
     }
 
     /**
@@ -274,40 +305,65 @@ public class BstMain {
      * @param order the tree traversal order
      * @throws IOException if error while writing
      */
-    static void write(BufferedWriter output, BST<Integer> tree, BST.Traversal order) throws IOException {
-    	int count = 0;
-    	LinkedList<Integer> list = tree.elements(order);
-    	for(Integer i : list){
-    		output.write(i.toString());
-    		count++;
-    		
-    		if(count%5 == 0){
-    			output.newLine();
-    		}
-    		else{
-    			output.write(' ');
-    		}
-    	}
+    static void write(IntWriter output, IntBST tree, BST.Traversal order) throws IOException {
+        int count = 0;
+        // the values are streamed from the tree without copying or boxing them
+        PrimitiveIterator.OfInt values = tree.iterator(order);
+        while (values.hasNext()) {
+            output.writeInt(values.nextInt());
+
+            // start a new line after five integers
+            count++;
+            if (count % 5 == 0)
+                output.newLine();
+            else
+                output.writeChar(' ');
+        }
     }
     
     /**
-     * Writes values from the list to the given writer.
+     * Writes values from the list, or any other Iterable, to the given
+     * writer.
      * 
      * @param output the output writer
      * @param list the list
      * @throws IOException if error while writing
      */
-    static void write(BufferedWriter output, LinkedList<Integer> list) throws IOException {
+    static void write(IntWriter output, Iterable<Integer> list) throws IOException {
         int count = 0;
         for (Integer value : list) {
-            output.write(value.toString());
+            output.writeInt(value);
             
             // start a new line after five integers
             count++;
             if (count % 5 == 0)
                 output.newLine();
             else
-                output.write(' ');
+                output.writeChar(' ');
+        }
+    }
+
+    /**
+     * Writes the values it receives five per line, like the write methods.
+     */
+    private static class LineSink implements ExternalSort.IntSink {
+        private final IntWriter output;
+        private int count;
+
+        LineSink(IntWriter output) {
+            this.output = output;
+        }
+
+        @Override
+        public void accept(int value) throws IOException {
+            output.writeInt(value);
+
+            // start a new line after five integers
+            count++;
+            if (count % 5 == 0)
+                output.newLine();
+            else
+                output.writeChar(' ');
         }
     }
 }
@@ -0,0 +1,317 @@
+package bst;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Binary search tree which many threads can read and modify at the same
+ * time.  add, remove and contains are linearizable.
+ *
+ * Readers never lock and never wait: contains walks the links, which are
+ * volatile, and checks a deleted flag on the node it finds.  Writers lock
+ * only the one or two nodes they change, parent before child, and check
+ * after locking that what they found is still in place, otherwise they
+ * search again.
+ *
+ * This works because the element of a node never changes and a node is
+ * never moved.  remove first marks the node deleted, which is the moment
+ * the element leaves the set.  A node with at most one child is then
+ * unlinked from its parent, its child taking its place.  An unlinked node
+ * keeps its links, so a reader standing on it still finds its way down,
+ * and it is never changed again.  A node with two children stays in the
+ * tree as a routing node until an add of the same element revives it, or
+ * until it loses a child: unlinking a leaf goes on to unlink its parent
+ * if that is a routing node left with one child, and so on up the tree.
+ * So a routing node only stays while both its subtrees hold elements.
+ *
+ * The tree is not balanced, like a BST with the NONE policy, since a
+ * rotation would move nodes under the feet of the readers.
+ *
+ * @param <T> the element type
+ */
+public class ConcurrentBST<T extends Comparable<T>> implements Iterable<T> {
+    /**
+     * Tree node.  The locks of the writers are the monitors of the nodes.
+     */
+    private static final class Node<T> {
+        final T data;
+        volatile Node<T> left;
+        volatile Node<T> right;
+        /** True once the element was removed from the set. */
+        volatile boolean deleted;
+        /** True once the node is no longer linked into the tree. */
+        volatile boolean unlinked;
+
+        Node(T data) {
+            this.data = data;
+        }
+    }
+
+    /**
+     * Sentinel above the root, greater than every element, so the root is
+     * its left child and every node has a parent.
+     */
+    private final Node<T> head = new Node<T>(null);
+    private final LongAdder size = new LongAdder();
+
+    /**
+     * Returns true if the tree contains data.  Never blocks.
+     *
+     * @param data the element to look for
+     * @return true if data is in the tree
+     */
+    public boolean contains(T data) {
+        if (data == null)
+            throw new IllegalArgumentException("Cannot look for nulls");
+
+        Node<T> here = head.left;
+        while (here != null) {
+            int cmp = data.compareTo(here.data);
+            if (cmp == 0)
+                return !here.deleted;
+            here = (cmp < 0) ? here.left : here.right;
+        }
+        return false;
+    }
+
+    /**
+     * Adds data to the tree if it is not there yet.
+     *
+     * @param data the element to add
+     * @return true if the tree did not contain data
+     */
+    public boolean add(T data) {
+        if (data == null)
+            throw new IllegalArgumentException("Cannot add nulls");
+
+        while (true) {
+            Node<T> parent = head;
+            Node<T> here = head.left;
+            int cmp = -1;
+            while (here != null) {
+                cmp = data.compareTo(here.data);
+                if (cmp == 0)
+                    break;
+                parent = here;
+                here = (cmp < 0) ? here.left : here.right;
+            }
+
+            if (here != null) {
+                // the element has a node, revive it if it is deleted
+                if (!here.deleted)
+                    return false;
+                synchronized (here) {
+                    if (here.unlinked)
+                        continue;
+                    if (!here.deleted)
+                        return false;
+                    here.deleted = false;
+                }
+                size.increment();
+                return true;
+            }
+
+            synchronized (parent) {
+                // the parent may have been unlinked or the place taken
+                if (parent.unlinked || ((cmp < 0) ? parent.left : parent.right) != null)
+                    continue;
+                if (cmp < 0)
+                    parent.left = new Node<T>(data);
+                else
+                    parent.right = new Node<T>(data);
+            }
+            size.increment();
+            return true;
+        }
+    }
+
+    /**
+     * Removes data from the tree.
+     *
+     * @param data the element to remove
+     * @return true if the tree contained data
+     */
+    public boolean remove(T data) {
+        if (data == null)
+            throw new IllegalArgumentException("Cannot remove nulls");
+
+        while (true) {
+            Node<T> parent = head;
+            Node<T> here = head.left;
+            while (here != null) {
+                int cmp = data.compareTo(here.data);
+                if (cmp == 0)
+                    break;
+                parent = here;
+                here = (cmp < 0) ? here.left : here.right;
+            }
+            if (here == null || here.deleted)
+                return false;
+
+            synchronized (here) {
+                if (here.unlinked)
+                    continue;
+                if (here.deleted)
+                    return false;
+                here.deleted = true;
+            }
+            size.decrement();
+            // unlinking a leaf may leave its parent, a routing node, with one child
+            Node<T> node = here;
+            while ((parent = unlink(parent, node)) != null && parent != head && parent.deleted) {
+                node = parent;
+                parent = findParent(node);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Unlinks a deleted node with at most one child from its parent.  If
+     * the parent found by the search was unlinked meanwhile, the node hangs
+     * under another one, which is searched again.  A node with two children
+     * stays as a routing node, the element is gone anyway.
+     *
+     * @param parent the parent found by the search, or null if unknown
+     * @return the parent this call unlinked the node from, or null if it
+     *         did not unlink it
+     */
+    private Node<T> unlink(Node<T> parent, Node<T> node) {
+        while (parent != null) {
+            synchronized (parent) {
+                synchronized (node) {
+                    if (node.unlinked || !node.deleted)
+                        return null;
+                    Node<T> left = node.left;
+                    Node<T> right = node.right;
+                    if (left != null && right != null)
+                        return null;
+                    if (!parent.unlinked && (parent.left == node || parent.right == node)) {
+                        Node<T> child = (left != null) ? left : right;
+                        if (parent.left == node)
+                            parent.left = child;
+                        else
+                            parent.right = child;
+                        node.unlinked = true;
+                        return parent;
+                    }
+                }
+            }
+            parent = findParent(node);
+        }
+        return null;
+    }
+
+    /**
+     * Searches the node whose child node currently is.
+     *
+     * @return the parent, or null if node is no longer in the tree
+     */
+    private Node<T> findParent(Node<T> node) {
+        Node<T> parent = head;
+        Node<T> here = head.left;
+        while (here != null && here != node) {
+            int cmp = node.data.compareTo(here.data);
+            if (cmp == 0)
+                return null; // another node holds the element now
+            parent = here;
+            here = (cmp < 0) ? here.left : here.right;
+        }
+        return (here == null) ? null : parent;
+    }
+
+    /**
+     * Returns the number of elements.  It is exact when no update is in
+     * progress, otherwise it is an estimate.
+     *
+     * @return the number of elements
+     */
+    public int size() {
+        return size.intValue();
+    }
+
+    /**
+     * Returns the elements in ascending order.  The iterator is weakly
+     * consistent: it never fails and never locks, it returns every element
+     * which stays in the tree while it runs and may or may not return the
+     * ones added or removed meanwhile.
+     *
+     * @return an iterator over the elements
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new InOrderIterator();
+    }
+
+    /**
+     * Counts the deleted nodes still linked with fewer than two children,
+     * which remove should have unlinked.  Only meaningful while no update
+     * is in progress.
+     *
+     * @return the number of such nodes, 0 in a tree at rest
+     */
+    int strayRoutingNodes() {
+        int count = 0;
+        ArrayDeque<Node<T>> stack = new ArrayDeque<Node<T>>();
+        if (head.left != null)
+            stack.push(head.left);
+        while (!stack.isEmpty()) {
+            Node<T> node = stack.pop();
+            if (node.deleted && (node.left == null || node.right == null))
+                count++;
+            if (node.left != null)
+                stack.push(node.left);
+            if (node.right != null)
+                stack.push(node.right);
+        }
+        return count;
+    }
+
+    /**
+     * In-order iterator, the stack holds the left spine of the nodes not
+     * yet visited and the next element is looked up ahead, skipping the
+     * deleted nodes.
+     */
+    private class InOrderIterator implements Iterator<T> {
+        private final ArrayDeque<Node<T>> stack = new ArrayDeque<Node<T>>();
+        private T next;
+
+        InOrderIterator() {
+            pushLeft(head.left);
+            advance();
+        }
+
+        private void pushLeft(Node<T> node) {
+            while (node != null) {
+                stack.push(node);
+                node = node.left;
+            }
+        }
+
+        private void advance() {
+            next = null;
+            while (next == null && !stack.isEmpty()) {
+                Node<T> node = stack.pop();
+                pushLeft(node.right);
+                if (!node.deleted)
+                    next = node.data;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            if (next == null)
+                throw new NoSuchElementException();
+            T data = next;
+            advance();
+            return data;
+        }
+    }
+}
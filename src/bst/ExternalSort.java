@@ -0,0 +1,456 @@
+package bst;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Sorts integer text files which do not fit in memory.
+ *
+ * The input is parsed in chunks which fit in the memory budget.  Each
+ * chunk is sorted in memory and spilled to a temporary file as a run of
+ * binary ints, then the runs are merged k ways into the sorted output.
+ * When there are more runs than the budget can buffer at once, groups of
+ * runs are first merged into longer runs.  An input which fits in one
+ * chunk is sorted without temporary files.  Duplicates are kept.
+ *
+ * The budget covers the buffers too.  A sixteenth of it, up to 8 MB, is
+ * the buffer reading the input and another one the buffer writing runs,
+ * the chunk gets the rest.  A chunk read from a file is sized for the
+ * values the file can hold, up to the rest of the budget, and one read
+ * from another channel grows while the old and the new array fit in the
+ * budget together, so a small input does not take the whole budget.  The
+ * merge reuses the write buffer and divides
+ * the part of the chunk between the runs it reads, so a sort allocates two
+ * direct buffers whatever the number of merge passes.
+ *
+ * The memory budget is given to the constructor, or read from the
+ * externalsort.memory system property, a number of bytes with an optional
+ * k, m or g suffix.  It defaults to a quarter of the maximum heap.
+ */
+public class ExternalSort {
+    /** The system property holding the default memory budget. */
+    public static final String MEMORY_PROPERTY = "externalsort.memory";
+
+    /** The smallest budget, so a chunk holds a useful number of values. */
+    private static final long MIN_MEMORY = 1 << 20;
+    /** The smallest buffer of a run being merged, the largest fan-in follows from it. */
+    private static final int MIN_RUN_BUFFER = 1 << 16;
+    private static final int MAX_RUN_BUFFER = 1 << 23;
+    /** The number of values of a chunk before it grows. */
+    private static final int INITIAL_CHUNK = 1024;
+
+    /**
+     * Receives the sorted values.
+     */
+    public interface IntSink {
+        void accept(int value) throws IOException;
+    }
+
+    private final long memory;
+    private final Path directory;
+    /** The temporary files which still exist. */
+    private final List<Path> files = new ArrayList<Path>();
+
+    /**
+     * Creates a sort using the default memory budget and the default
+     * temporary directory.
+     */
+    public ExternalSort() {
+        this(defaultMemory(), Paths.get(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * Creates a sort with the given memory budget, spilling its runs into
+     * directory.
+     *
+     * @param memory the number of bytes the sort may use for values and buffers
+     * @param directory where the temporary run files are created
+     */
+    public ExternalSort(long memory, Path directory) {
+        if (memory < MIN_MEMORY)
+            throw new IllegalArgumentException("Memory budget must be at least " + MIN_MEMORY + " bytes: " + memory);
+        if (directory == null)
+            throw new IllegalArgumentException("Temporary directory is required");
+        this.memory = memory;
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the memory budget set by the externalsort.memory system
+     * property, or a quarter of the maximum heap if it is not set.
+     *
+     * @return the default memory budget in bytes
+     */
+    public static long defaultMemory() {
+        String value = System.getProperty(MEMORY_PROPERTY);
+        if (value == null)
+            return Math.max(MIN_MEMORY, Runtime.getRuntime().maxMemory() / 4);
+        return parseSize(value);
+    }
+
+    /**
+     * Parses a number of bytes with an optional k, m or g suffix.
+     *
+     * @param value the text to parse, like "512m"
+     * @return the number of bytes
+     */
+    static long parseSize(String value) {
+        String text = value.trim().toLowerCase(Locale.ROOT);
+        int shift = 0;
+        if (text.endsWith("k"))
+            shift = 10;
+        else if (text.endsWith("m"))
+            shift = 20;
+        else if (text.endsWith("g"))
+            shift = 30;
+        if (shift > 0)
+            text = text.substring(0, text.length() - 1);
+        try {
+            long size = Long.parseLong(text);
+            if (size < 0 || size > (Long.MAX_VALUE >> shift))
+                throw new IllegalArgumentException("Invalid memory size: " + value);
+            return size << shift;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid memory size: " + value, e);
+        }
+    }
+
+    /**
+     * Reads all the integers from input and passes them to output in
+     * ascending order.
+     *
+     * @param input the integer text to sort, it is not closed
+     * @param output receives the sorted values
+     * @return the number of values sorted
+     * @throws IOException if reading, writing or a temporary file fails
+     * @throws NumberFormatException if a token of the input is not an int
+     */
+    public long sort(ReadableByteChannel input, IntSink output) throws IOException {
+        List<Path> runs = new ArrayList<Path>();
+        try {
+            int bufferSize = bufferSize();
+            ByteBuffer buffers = ByteBuffer.allocateDirect(2 * bufferSize);
+            ByteBuffer writeBuffer = slice(buffers, 1, bufferSize);
+            long count = split(input, runs, output, slice(buffers, 0, bufferSize), writeBuffer);
+            // the chunk is garbage now, the readers of the merge take its part of the budget
+            if (!runs.isEmpty())
+                merge(runs, output, memory - buffers.capacity(), writeBuffer);
+            return count;
+        } finally {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+            files.clear();
+        }
+    }
+
+    /**
+     * Reads the input in chunks and spills every chunk, sorted, to a new
+     * run.  An input which fits in one chunk is sorted straight into output
+     * instead.
+     *
+     * @return the number of values read
+     */
+    private long split(ReadableByteChannel input, final List<Path> runs, IntSink output, ByteBuffer inputBuffer,
+            final ByteBuffer buffer) throws IOException {
+        long chunkBytes = memory - inputBuffer.capacity() - buffer.capacity();
+        final Chunk chunk = new Chunk((int) Math.min(chunkBytes / Integer.BYTES, Integer.MAX_VALUE - 8),
+                maxValues(input));
+        long count;
+        try {
+            count = IntReader.read(input, value -> {
+                if (chunk.isFull()) {
+                    // the parser only passes on unchecked exceptions
+                    try {
+                        runs.add(spill(chunk.values, chunk.length, buffer));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    chunk.length = 0;
+                }
+                chunk.values[chunk.length++] = value;
+            }, inputBuffer);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        if (runs.isEmpty()) {
+            Arrays.sort(chunk.values, 0, chunk.length);
+            for (int i = 0; i < chunk.length; i++) {
+                output.accept(chunk.values[i]);
+            }
+        } else {
+            runs.add(spill(chunk.values, chunk.length, buffer));
+        }
+        return count;
+    }
+
+    /**
+     * Returns the most values left in input if it is a file: a value takes
+     * at least a digit and a separator, the last one needs no separator.
+     *
+     * @return the most values input holds, or -1 if its size is not known
+     */
+    private static long maxValues(ReadableByteChannel input) throws IOException {
+        if (!(input instanceof FileChannel))
+            return -1;
+        FileChannel file = (FileChannel) input;
+        return (Math.max(0, file.size() - file.position()) + 1) / 2;
+    }
+
+    /**
+     * The values read but not spilled yet.
+     */
+    private static class Chunk {
+        /** The most values the budget leaves room for. */
+        private final int limit;
+        int[] values;
+        int length;
+
+        Chunk(int limit, long expected) {
+            this.limit = limit;
+            values = new int[(int) Math.min(limit, Math.max(expected, INITIAL_CHUNK))];
+        }
+
+        /**
+         * Makes room for one more value if the budget allows, growing the
+         * array by half at most, so that the old and the new array fit in
+         * the budget together while one is copied into the other.
+         *
+         * @return true if the chunk has to be spilled first
+         */
+        boolean isFull() {
+            if (length < values.length)
+                return false;
+            int grown = (int) Math.min((long) values.length + (values.length >> 1), (long) limit - values.length);
+            if (grown <= values.length)
+                return true;
+            values = Arrays.copyOf(values, grown);
+            return false;
+        }
+    }
+
+    /**
+     * Sorts the first length values of chunk and writes them to a new run.
+     */
+    private Path spill(int[] chunk, int length, ByteBuffer buffer) throws IOException {
+        Arrays.sort(chunk, 0, length);
+        Path run = createRun();
+        try (RunWriter writer = new RunWriter(run, buffer)) {
+            for (int i = 0; i < length; i++) {
+                writer.accept(chunk[i]);
+            }
+        }
+        return run;
+    }
+
+    /**
+     * Merges the runs into output, first merging groups of runs into longer
+     * runs while there are too many to buffer them all.  The passes share
+     * one buffer of at most readBudget bytes for their readers, and the
+     * groups merged into a new run write it through writeBuffer.
+     */
+    private void merge(List<Path> runs, IntSink output, long readBudget, ByteBuffer writeBuffer)
+            throws IOException {
+        int fanIn = (int) Math.max(2, Math.min(Integer.MAX_VALUE, readBudget / MIN_RUN_BUFFER));
+        // the first pass reads the most runs at once
+        long readBytes = Math.min(readBudget, (long) Math.min(fanIn, runs.size()) * MAX_RUN_BUFFER);
+        ByteBuffer readBuffer = ByteBuffer.allocateDirect((int) Math.min(readBytes, Integer.MAX_VALUE - 8));
+        while (runs.size() > fanIn) {
+            List<Path> merged = new ArrayList<Path>();
+            for (int from = 0; from < runs.size(); from += fanIn) {
+                List<Path> group = runs.subList(from, Math.min(from + fanIn, runs.size()));
+                if (group.size() == 1) {
+                    merged.add(group.get(0));
+                    continue;
+                }
+                Path run = createRun();
+                try (RunWriter writer = new RunWriter(run, writeBuffer)) {
+                    mergeRuns(group, writer, readBuffer);
+                }
+                for (Path file : group) {
+                    delete(file);
+                }
+                merged.add(run);
+            }
+            runs = merged;
+        }
+        mergeRuns(runs, output, readBuffer);
+    }
+
+    /**
+     * Merges the runs with a binary min-heap of their readers ordered by
+     * their current values.  Every reader buffers its run in an equal
+     * slice of readBuffer.
+     */
+    private void mergeRuns(List<Path> runs, IntSink output, ByteBuffer readBuffer) throws IOException {
+        RunReader[] heap = new RunReader[runs.size()];
+        int size = 0;
+        int sliceSize = Math.min(MAX_RUN_BUFFER, readBuffer.capacity() / runs.size()) & ~(Integer.BYTES - 1);
+        try {
+            for (int i = 0; i < runs.size(); i++) {
+                RunReader reader = new RunReader(runs.get(i), slice(readBuffer, i, sliceSize));
+                if (reader.advance())
+                    heap[size++] = reader;
+                else
+                    reader.close();
+            }
+            for (int i = size / 2 - 1; i >= 0; i--) {
+                siftDown(heap, size, i);
+            }
+
+            while (size > 0) {
+                RunReader smallest = heap[0];
+                output.accept(smallest.current);
+                if (!smallest.advance()) {
+                    smallest.close();
+                    heap[0] = heap[--size];
+                    heap[size] = null;
+                }
+                siftDown(heap, size, 0);
+            }
+        } finally {
+            for (int i = 0; i < size; i++) {
+                heap[i].close();
+            }
+        }
+    }
+
+    private static void siftDown(RunReader[] heap, int size, int index) {
+        RunReader reader = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size)
+                break;
+            if (child + 1 < size && heap[child + 1].current < heap[child].current)
+                child++;
+            if (reader.current <= heap[child].current)
+                break;
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = reader;
+    }
+
+    /**
+     * Returns the size of the buffers reading the input and writing runs,
+     * a sixteenth of the budget in whole ints.
+     */
+    private int bufferSize() {
+        long size = Math.max(MIN_RUN_BUFFER, Math.min(MAX_RUN_BUFFER, memory / 16));
+        return (int) size & ~(Integer.BYTES - 1);
+    }
+
+    /**
+     * Returns the index-th of the consecutive parts of size bytes of
+     * buffer, sharing its memory.
+     */
+    private static ByteBuffer slice(ByteBuffer buffer, int index, int size) {
+        ByteBuffer part = buffer.duplicate();
+        part.limit((index + 1) * size);
+        part.position(index * size);
+        return part.slice();
+    }
+
+    private Path createRun() throws IOException {
+        Path run = Files.createTempFile(directory, "sort", ".run");
+        files.add(run);
+        return run;
+    }
+
+    private void delete(Path file) throws IOException {
+        Files.deleteIfExists(file);
+        files.remove(file);
+    }
+
+    /**
+     * Writes a run of binary ints.
+     */
+    private static class RunWriter implements IntSink, Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+
+        RunWriter(Path file, ByteBuffer buffer) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            this.buffer = buffer;
+            buffer.clear();
+        }
+
+        @Override
+        public void accept(int value) throws IOException {
+            if (!buffer.hasRemaining())
+                flush();
+            buffer.putInt(value);
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Reads a run of binary ints, one value ahead.
+     */
+    private static class RunReader implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        /** The value the last call to advance() read. */
+        int current;
+
+        RunReader(Path file, ByteBuffer buffer) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            this.buffer = buffer;
+            buffer.limit(0);
+        }
+
+        /**
+         * Reads the next value into current.
+         *
+         * @return false at the end of the run
+         */
+        boolean advance() throws IOException {
+            if (buffer.remaining() < Integer.BYTES) {
+                buffer.compact();
+                while (buffer.position() < Integer.BYTES) {
+                    if (channel.read(buffer) < 0) {
+                        buffer.flip();
+                        return false;
+                    }
+                }
+                buffer.flip();
+            }
+            current = buffer.getInt();
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,721 @@
+package bst;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
+/**
+ * Binary search tree of int values.  It works like BST but keeps the keys
+ * unboxed, and the nodes live in an IntNodePool instead of being objects,
+ * so a tree does not allocate per value.
+ */
+public class IntBST {
+    private static final int NIL = IntNodePool.NIL;
+    private static final int SNAPSHOT_BUFFER_SIZE = 1 << 20;
+
+    private final BST.Balancing balancing;
+    private final IntNodePool pool;
+    private int root = NIL;
+    private int modCount;
+    /**
+     * The descent path of add and remove in an AVL tree, which is balanced
+     * bottom up afterwards.  It is kept between operations so it is not
+     * allocated again for every one.
+     */
+    private final IntStack path = new IntStack();
+
+    /**
+     * Creates an empty tree which is not rebalanced.
+     */
+    public IntBST() {
+        this(BST.Balancing.NONE);
+    }
+
+    /**
+     * Creates an empty tree with the given balancing policy, its nodes are
+     * kept on the heap.
+     *
+     * @param balancing the balancing policy, NONE or AVL
+     */
+    public IntBST(BST.Balancing balancing) {
+        this(balancing, IntNodePool.onHeap());
+    }
+
+    /**
+     * Creates an empty tree with the given balancing policy, keeping its
+     * nodes in the given pool.  The pool must be empty and must not be
+     * shared with another tree.
+     *
+     * @param balancing the balancing policy, NONE or AVL
+     * @param pool the node storage
+     */
+    public IntBST(BST.Balancing balancing, IntNodePool pool) {
+        if (balancing == null)
+            throw new IllegalArgumentException("Balancing policy is required");
+        if (balancing == BST.Balancing.SPLAY)
+            throw new IllegalArgumentException("IntBST does not support splay trees");
+        if (pool == null || pool.size() != 0)
+            throw new IllegalArgumentException("An empty node pool is required");
+        this.balancing = balancing;
+        this.pool = pool;
+    }
+
+    /**
+     * Returns the balancing policy of this tree.
+     *
+     * @return the balancing policy
+     */
+    public BST.Balancing getBalancing() {
+        return balancing;
+    }
+
+    /**
+     * Builds a tree of minimal height from values sorted in ascending
+     * order, in linear time.  Equal consecutive values are stored once.
+     *
+     * @param sorted the values in ascending order, the array is not modified
+     * @param balancing the balancing policy of the new tree
+     * @return a new tree holding the values
+     * @throws IllegalArgumentException if the values are not sorted
+     */
+    public static IntBST fromSorted(int[] sorted, BST.Balancing balancing) {
+        int distinct = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i > 0 && sorted[i] < sorted[i - 1])
+                throw new IllegalArgumentException("Values are not sorted, " + sorted[i] + " follows " + sorted[i - 1]);
+            if (i == 0 || sorted[i] != sorted[i - 1])
+                distinct++;
+        }
+
+        int[] values = sorted;
+        if (distinct < sorted.length) {
+            values = new int[distinct];
+            int n = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (i == 0 || sorted[i] != sorted[i - 1])
+                    values[n++] = sorted[i];
+            }
+        }
+
+        IntBST tree = new IntBST(balancing);
+        int[] nodes = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            nodes[i] = tree.pool.allocate(values[i]);
+        }
+        tree.root = tree.linkBalanced(nodes, 0, nodes.length);
+        return tree;
+    }
+
+    /**
+     * Writes a binary snapshot of the tree: its balancing policy and its
+     * values in ascending order, as 4 byte ints.  See SnapshotFormat for
+     * the layout.  MappedIntSet serves lookups straight from a snapshot
+     * file.
+     *
+     * @param output where the snapshot is written, it is not closed
+     * @throws IOException if writing fails
+     */
+    public void writeSnapshot(WritableByteChannel output) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(SNAPSHOT_BUFFER_SIZE);
+        SnapshotFormat.putHeader(buffer, SnapshotFormat.INT_KEYS, balancing, false, size());
+        PrimitiveIterator.OfInt values = iterator(BST.Traversal.IN_ORDER);
+        while (values.hasNext()) {
+            if (buffer.remaining() < Integer.BYTES)
+                writeFully(output, buffer);
+            buffer.putInt(values.nextInt());
+        }
+        writeFully(output, buffer);
+    }
+
+    private static void writeFully(WritableByteChannel output, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            output.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Loads a tree kept on the heap from a snapshot written by
+     * writeSnapshot().
+     *
+     * @param input where the snapshot is read from, it is not closed and
+     *        it may be read past the end of the snapshot
+     * @return the tree, with the balancing policy of the tree which was
+     *         written
+     * @throws IOException if reading fails or the input is not a snapshot
+     */
+    public static IntBST readSnapshot(ReadableByteChannel input) throws IOException {
+        return readSnapshot(input, IntNodePool.onHeap());
+    }
+
+    /**
+     * Loads a tree from a snapshot written by writeSnapshot(), keeping its
+     * nodes in the given pool.  The values are allocated in ascending
+     * order while they are read and then linked into a tree of minimal
+     * height by their slots, so loading takes linear time and no memory
+     * besides the pool.
+     *
+     * @param input where the snapshot is read from, it is not closed and
+     *        it may be read past the end of the snapshot
+     * @param pool the node storage, a new pool which was never used
+     * @return the tree, with the balancing policy of the tree which was
+     *         written
+     * @throws IOException if reading fails, the input is not a snapshot or
+     *         its values are not in ascending order
+     */
+    public static IntBST readSnapshot(ReadableByteChannel input, IntNodePool pool) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(SNAPSHOT_BUFFER_SIZE);
+        buffer.limit(0);
+        fill(input, buffer, SnapshotFormat.HEADER_SIZE);
+        SnapshotFormat.Header snapshot = SnapshotFormat.getHeader(buffer, SnapshotFormat.INT_KEYS);
+
+        IntBST tree = new IntBST(snapshot.balancing, pool);
+        int count = (int) snapshot.count;
+        int previous = 0;
+        for (int i = 0; i < count; i++) {
+            if (buffer.remaining() < Integer.BYTES)
+                fill(input, buffer, Integer.BYTES);
+            int value = buffer.getInt();
+            if (i > 0 && value <= previous)
+                throw new IOException("Tree snapshot values are not ascending, " + value + " follows " + previous);
+            if (pool.allocate(value) != i)
+                throw new IllegalArgumentException("A new node pool is required");
+            previous = value;
+        }
+        tree.root = tree.linkSlots(0, count);
+        return tree;
+    }
+
+    /**
+     * Reads from input until buffer holds at least needed bytes after its
+     * position, keeping the bytes not consumed yet.
+     */
+    private static void fill(ReadableByteChannel input, ByteBuffer buffer, int needed) throws IOException {
+        buffer.compact();
+        while (buffer.position() < needed) {
+            if (input.read(buffer) < 0)
+                throw new EOFException("Tree snapshot is truncated");
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Links the nodes in the slots between from (inclusive) and to
+     * (exclusive) into a tree of minimal height, for nodes which were
+     * allocated in ascending order of their keys by a new pool.
+     *
+     * @param from the first slot of the tree
+     * @param to the end of the slots of the tree
+     * @return the root of the tree
+     */
+    private int linkSlots(int from, int to) {
+        if (from >= to)
+            return NIL;
+
+        int middle = (from + to) >>> 1;
+        pool.setLeft(middle, linkSlots(from, middle));
+        pool.setRight(middle, linkSlots(middle + 1, to));
+        updateHeight(middle);
+        return middle;
+    }
+
+    /**
+     * Links the nodes between from (inclusive) and to (exclusive) into a
+     * tree of minimal height, the middle node becomes the root.
+     *
+     * @param nodes the nodes in ascending order of their keys
+     * @param from the first node of the tree
+     * @param to the end of the nodes of the tree
+     * @return the root of the tree
+     */
+    private int linkBalanced(int[] nodes, int from, int to) {
+        if (from >= to)
+            return NIL;
+
+        int middle = (from + to) >>> 1;
+        int node = nodes[middle];
+        pool.setLeft(node, linkBalanced(nodes, from, middle));
+        pool.setRight(node, linkBalanced(nodes, middle + 1, to));
+        updateHeight(node);
+        return node;
+    }
+
+    /**
+     * Returns the number of values in the tree.
+     *
+     * @return the number of values
+     */
+    public int size() {
+        return pool.size();
+    }
+
+    /**
+     * Returns true if the tree contains the value.
+     *
+     * @param value the value to look for
+     * @return true if the value is in the tree
+     */
+    public boolean contains(int value) {
+        int here = root;
+        while (here != NIL) {
+            int key = pool.key(here);
+            if (value < key)
+                here = pool.left(here);
+            else if (value > key)
+                here = pool.right(here);
+            else
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Adds the value to the tree, if it is not already there.
+     *
+     * @param value the value to add
+     */
+    public void add(int value) {
+        if (root == NIL) {
+            root = pool.allocate(value);
+            modCount++;
+            return;
+        }
+
+        // only a balanced tree needs the path back to the root
+        boolean avl = balancing == BST.Balancing.AVL;
+        path.clear();
+        int here = root;
+        while (true) {
+            int key = pool.key(here);
+            if (value == key)
+                return;
+            if (avl)
+                path.push(here);
+
+            if (value < key) {
+                int left = pool.left(here);
+                if (left == NIL) {
+                    pool.setLeft(here, pool.allocate(value));
+                    break;
+                }
+                here = left;
+            } else {
+                int right = pool.right(here);
+                if (right == NIL) {
+                    pool.setRight(here, pool.allocate(value));
+                    break;
+                }
+                here = right;
+            }
+        }
+        modCount++;
+
+        if (avl)
+            root = rebalancePath(0, root);
+    }
+
+    /**
+     * Removes the value from the tree, if it exists.  The slot of the
+     * removed node is reused by later adds.
+     *
+     * @param value the value to remove
+     */
+    public void remove(int value) {
+        // only a balanced tree needs the path back to the root
+        boolean avl = balancing == BST.Balancing.AVL;
+        path.clear();
+        int parent = NIL;
+        int here = root;
+        while (here != NIL) {
+            int key = pool.key(here);
+            if (value == key)
+                break;
+            if (avl)
+                path.push(here);
+            parent = here;
+            here = (value < key) ? pool.left(here) : pool.right(here);
+        }
+        if (here == NIL)
+            return; // not in the tree
+
+        // replace the node by one of its subtrees or by the join of both
+        int left = pool.left(here);
+        int right = pool.right(here);
+        int replacement;
+        if (right == NIL) {
+            replacement = left;
+        } else if (left == NIL) {
+            replacement = right;
+        } else {
+            replacement = joinSubtrees(left, right);
+            if (avl) {
+                // the new node takes over the position of the removed one
+                pool.setHeight(replacement, pool.height(here));
+                path.push(replacement);
+            }
+        }
+        replaceChild(parent, here, replacement);
+        pool.free(here);
+        modCount++;
+
+        if (avl)
+            root = rebalancePath(0, root);
+    }
+
+    /**
+     * Removes a batch of values from the tree.
+     *
+     * Small batches are removed one by one.  A batch which is large
+     * compared to the tree is sorted and removed in a single in-order pass
+     * over the tree, after which the remaining nodes are relinked into a
+     * tree of minimal height.  That costs O(n + m log m) for m values
+     * instead of m descents from the root.
+     *
+     * @param values the values to remove, the array is not modified
+     * @return the number of values actually removed
+     */
+    public int removeAll(int[] values) {
+        int size = size();
+        // a descent costs about log2(n) so one pass is cheaper for large batches
+        if ((long) values.length * (32 - Integer.numberOfLeadingZeros(size)) < size) {
+            for (int value : values) {
+                remove(value);
+            }
+            return size - size();
+        }
+
+        int[] keys = values.clone();
+        Arrays.sort(keys);
+        int[] kept = new int[size];
+        int keptCount = 0;
+        int next = 0;
+        IntStack stack = new IntStack();
+        int current = root;
+        while (current != NIL || !stack.isEmpty()) {
+            while (current != NIL) {
+                stack.push(current);
+                current = pool.left(current);
+            }
+            int node = stack.pop();
+            current = pool.right(node);
+
+            int key = pool.key(node);
+            while (next < keys.length && keys[next] < key)
+                next++;
+            if (next < keys.length && keys[next] == key)
+                pool.free(node);
+            else
+                kept[keptCount++] = node;
+        }
+
+        if (keptCount < size) {
+            root = linkBalanced(kept, 0, keptCount);
+            modCount++;
+        }
+        return size - keptCount;
+    }
+
+    /**
+     * Calls the action for every value of the tree in the specified
+     * traversal order.
+     *
+     * @param order the traversal order of the tree
+     * @param action the action called with each value
+     */
+    public void forEach(BST.Traversal order, IntConsumer action) {
+        PrimitiveIterator.OfInt values = iterator(order);
+        while (values.hasNext()) {
+            action.accept(values.nextInt());
+        }
+    }
+
+    /**
+     * Returns an iterator over the values of the tree in the specified
+     * traversal order.  The values are produced lazily and never boxed when
+     * read with nextInt().  The iterator fails if the tree is modified
+     * while it is in use.
+     *
+     * @param order the traversal order of the tree
+     * @return an iterator over the tree values
+     */
+    public PrimitiveIterator.OfInt iterator(BST.Traversal order) {
+        if (order == null)
+            throw new IllegalArgumentException("Traversal order is required");
+
+        switch (order) {
+        case IN_ORDER:
+            return new InOrderIterator();
+        case POST_ORDER:
+            return new PostOrderIterator();
+        case PRE_ORDER:
+            return new PreOrderIterator();
+        default:
+            throw new IllegalArgumentException();
+        }
+    }
+
+    /**
+     * Growable stack of node indexes.
+     */
+    private static class IntStack {
+        private int[] nodes = new int[32];
+        private int size;
+
+        void push(int node) {
+            if (size == nodes.length)
+                nodes = Arrays.copyOf(nodes, size * 2);
+            nodes[size++] = node;
+        }
+
+        int pop() {
+            return nodes[--size];
+        }
+
+        /** Returns the top of the stack or NIL if the stack is empty. */
+        int peek() {
+            return (size == 0) ? NIL : nodes[size - 1];
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        /** Pops the nodes above the given size. */
+        void truncate(int newSize) {
+            size = newSize;
+        }
+
+        void clear() {
+            size = 0;
+        }
+    }
+
+    /**
+     * Iterator walking the tree with an explicit stack of pending nodes.
+     * The subclasses define which nodes are on the stack.
+     */
+    private abstract class TreeIterator implements PrimitiveIterator.OfInt {
+        protected final IntStack stack = new IntStack();
+        private final int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty();
+        }
+
+        @Override
+        public int nextInt() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (stack.isEmpty())
+                throw new NoSuchElementException();
+            return pool.key(nextNode());
+        }
+
+        /**
+         * Removes the next node from the stack and pushes the nodes which
+         * follow it.
+         *
+         * @return the next node in traversal order
+         */
+        protected abstract int nextNode();
+    }
+
+    private class InOrderIterator extends TreeIterator {
+        InOrderIterator() {
+            pushLeft(root);
+        }
+
+        @Override
+        protected int nextNode() {
+            int node = stack.pop();
+            pushLeft(pool.right(node));
+            return node;
+        }
+
+        private void pushLeft(int node) {
+            while (node != NIL) {
+                stack.push(node);
+                node = pool.left(node);
+            }
+        }
+    }
+
+    private class PreOrderIterator extends TreeIterator {
+        PreOrderIterator() {
+            if (root != NIL)
+                stack.push(root);
+        }
+
+        @Override
+        protected int nextNode() {
+            int node = stack.pop();
+            int left = pool.left(node);
+            int right = pool.right(node);
+            if (right != NIL)
+                stack.push(right);
+            if (left != NIL)
+                stack.push(left);
+            return node;
+        }
+    }
+
+    private class PostOrderIterator extends TreeIterator {
+        PostOrderIterator() {
+            pushFirstLeaf(root);
+        }
+
+        @Override
+        protected int nextNode() {
+            int node = stack.pop();
+            int parent = stack.peek();
+            if (parent != NIL && pool.left(parent) == node)
+                pushFirstLeaf(pool.right(parent));
+            return node;
+        }
+
+        private void pushFirstLeaf(int node) {
+            while (node != NIL) {
+                stack.push(node);
+                int left = pool.left(node);
+                node = (left != NIL) ? left : pool.right(node);
+            }
+        }
+    }
+
+    /**
+     * Joins two subtrees under the leftmost node of the right subtree.
+     * The caller balances the new root.
+     *
+     * @param leftRoot the root node of the left tree
+     * @param rightRoot the root node of the right tree
+     * @return the new root of the joined trees
+     */
+    private int joinSubtrees(int leftRoot, int rightRoot) {
+        // the path of the caller stays below floor
+        boolean avl = balancing == BST.Balancing.AVL;
+        int floor = path.size();
+
+        int parent = NIL;
+        int newRoot = rightRoot;
+        while (pool.left(newRoot) != NIL) {
+            if (avl)
+                path.push(newRoot);
+            parent = newRoot;
+            newRoot = pool.left(newRoot);
+        }
+
+        if (parent == NIL) {
+            rightRoot = pool.right(newRoot);
+        } else {
+            pool.setLeft(parent, pool.right(newRoot));
+            if (avl)
+                rightRoot = rebalancePath(floor, rightRoot);
+        }
+
+        pool.setLeft(newRoot, leftRoot);
+        pool.setRight(newRoot, rightRoot);
+        return newRoot;
+    }
+
+    private void replaceChild(int parent, int oldChild, int newChild) {
+        if (parent == NIL)
+            root = newChild;
+        else if (pool.left(parent) == oldChild)
+            pool.setLeft(parent, newChild);
+        else
+            pool.setRight(parent, newChild);
+    }
+
+    /**
+     * Balances the nodes on the path bottom up, stopping once a subtree
+     * keeps its height.  The nodes above floor are popped from the path,
+     * the top one being the first one pushed after floor.
+     *
+     * @param floor the number of path nodes which belong to the caller
+     * @param top the root of the subtree containing the path
+     * @return the new root of the subtree
+     */
+    private int rebalancePath(int floor, int top) {
+        while (path.size() > floor) {
+            int node = path.pop();
+            int oldHeight = pool.height(node);
+            int balanced = balance(node);
+            if (balanced == node && pool.height(node) == oldHeight) {
+                path.truncate(floor);
+                return top;
+            }
+
+            if (path.size() == floor)
+                return balanced;
+            int parent = path.peek();
+            if (pool.left(parent) == node)
+                pool.setLeft(parent, balanced);
+            else
+                pool.setRight(parent, balanced);
+        }
+        return top;
+    }
+
+    /**
+     * Restores the AVL property at node after one of its subtrees grew or
+     * shrank by at most one level.
+     *
+     * @param node the root of the subtree to balance
+     * @return the new root of the subtree
+     */
+    private int balance(int node) {
+        updateHeight(node);
+        int left = pool.left(node);
+        int right = pool.right(node);
+        int diff = height(left) - height(right);
+        if (diff > 1) {
+            if (height(pool.left(left)) < height(pool.right(left)))
+                pool.setLeft(node, rotateLeft(left));
+            return rotateRight(node);
+        } else if (diff < -1) {
+            if (height(pool.right(right)) < height(pool.left(right)))
+                pool.setRight(node, rotateRight(right));
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private int rotateRight(int node) {
+        int pivot = pool.left(node);
+        pool.setLeft(node, pool.right(pivot));
+        pool.setRight(pivot, node);
+        updateHeight(node);
+        updateHeight(pivot);
+        return pivot;
+    }
+
+    private int rotateLeft(int node) {
+        int pivot = pool.right(node);
+        pool.setRight(node, pool.left(pivot));
+        pool.setLeft(pivot, node);
+        updateHeight(node);
+        updateHeight(pivot);
+        return pivot;
+    }
+
+    private int height(int node) {
+        return (node == NIL) ? 0 : pool.height(node);
+    }
+
+    private void updateHeight(int node) {
+        pool.setHeight(node, 1 + Math.max(height(pool.left(node)), height(pool.right(node))));
+    }
+}
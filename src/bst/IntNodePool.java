@@ -0,0 +1,281 @@
+package bst;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Storage for the nodes of an IntBST.  A node is an int index into the
+ * pool, and the links between nodes are indexes too, so a tree does not
+ * need an object per node.  Removed nodes go to a free list and their
+ * slots are reused by the next allocations.
+ *
+ * The pool is either on the heap, where the node fields are kept in
+ * parallel int arrays, or off the heap in a direct ByteBuffer holding one
+ * 16 byte record per node.
+ */
+public abstract class IntNodePool {
+    /** The index representing a missing node. */
+    public static final int NIL = -1;
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /** First slot of the free list, linked through the left field. */
+    private int freeHead = NIL;
+    /** Slots from here on were never allocated. */
+    private int nextSlot;
+    private int size;
+
+    /**
+     * Creates a pool keeping the nodes in parallel arrays on the heap.
+     *
+     * @return an empty heap pool
+     */
+    public static IntNodePool onHeap() {
+        return new HeapPool(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a pool keeping the nodes in a direct buffer outside the heap.
+     *
+     * @return an empty off-heap pool
+     */
+    public static IntNodePool offHeap() {
+        return new DirectPool(DEFAULT_CAPACITY);
+    }
+
+    public abstract int left(int node);
+
+    public abstract int right(int node);
+
+    public abstract int key(int node);
+
+    public abstract int height(int node);
+
+    public abstract void setLeft(int node, int left);
+
+    public abstract void setRight(int node, int right);
+
+    public abstract void setKey(int node, int key);
+
+    public abstract void setHeight(int node, int height);
+
+    /**
+     * Returns the number of slots the pool can hold without growing.
+     *
+     * @return the capacity of the pool
+     */
+    public abstract int capacity();
+
+    /**
+     * Grows the storage so it can hold at least minCapacity nodes.
+     *
+     * @param minCapacity the number of nodes needed
+     */
+    protected abstract void grow(int minCapacity);
+
+    /**
+     * Returns the number of allocated nodes.
+     *
+     * @return the number of nodes in use
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Allocates a leaf node holding key, reusing a freed slot if there is
+     * one.
+     *
+     * @param key the key of the node
+     * @return the new node
+     */
+    public int allocate(int key) {
+        int node;
+        if (freeHead != NIL) {
+            node = freeHead;
+            freeHead = left(node);
+        } else {
+            if (nextSlot == capacity())
+                grow(nextSlot + 1);
+            node = nextSlot++;
+        }
+        setLeft(node, NIL);
+        setRight(node, NIL);
+        setKey(node, key);
+        setHeight(node, 1);
+        size++;
+        return node;
+    }
+
+    /**
+     * Returns the slot of node to the free list.
+     *
+     * @param node the node to free
+     */
+    public void free(int node) {
+        setLeft(node, freeHead);
+        freeHead = node;
+        size--;
+    }
+
+    /**
+     * Computes the capacity after growing, 1.5 times the current one but at
+     * least minCapacity.
+     *
+     * @param current the current capacity
+     * @param minCapacity the capacity needed
+     * @param maxCapacity the largest possible capacity
+     * @return the new capacity
+     */
+    static int newCapacity(int current, int minCapacity, int maxCapacity) {
+        if (minCapacity > maxCapacity || minCapacity < 0)
+            throw new IllegalStateException("Node pool cannot hold more than " + maxCapacity + " nodes");
+        long grown = current + (current >> 1) + 1L;
+        return (int) Math.min(maxCapacity, Math.max(grown, minCapacity));
+    }
+
+    /**
+     * Nodes kept as a struct of arrays on the heap.
+     */
+    private static class HeapPool extends IntNodePool {
+        private int[] left;
+        private int[] right;
+        private int[] key;
+        private int[] height;
+
+        HeapPool(int capacity) {
+            left = new int[capacity];
+            right = new int[capacity];
+            key = new int[capacity];
+            height = new int[capacity];
+        }
+
+        @Override
+        public int left(int node) {
+            return left[node];
+        }
+
+        @Override
+        public int right(int node) {
+            return right[node];
+        }
+
+        @Override
+        public int key(int node) {
+            return key[node];
+        }
+
+        @Override
+        public int height(int node) {
+            return height[node];
+        }
+
+        @Override
+        public void setLeft(int node, int value) {
+            left[node] = value;
+        }
+
+        @Override
+        public void setRight(int node, int value) {
+            right[node] = value;
+        }
+
+        @Override
+        public void setKey(int node, int value) {
+            key[node] = value;
+        }
+
+        @Override
+        public void setHeight(int node, int value) {
+            height[node] = value;
+        }
+
+        @Override
+        public int capacity() {
+            return key.length;
+        }
+
+        @Override
+        protected void grow(int minCapacity) {
+            int capacity = newCapacity(key.length, minCapacity, Integer.MAX_VALUE - 8);
+            left = Arrays.copyOf(left, capacity);
+            right = Arrays.copyOf(right, capacity);
+            key = Arrays.copyOf(key, capacity);
+            height = Arrays.copyOf(height, capacity);
+        }
+    }
+
+    /**
+     * Nodes kept as 16 byte records in a direct buffer: left, right, key and
+     * height.
+     */
+    private static class DirectPool extends IntNodePool {
+        private static final int RECORD = 16;
+        private static final int LEFT = 0;
+        private static final int RIGHT = 4;
+        private static final int KEY = 8;
+        private static final int HEIGHT = 12;
+
+        private ByteBuffer buffer;
+
+        DirectPool(int capacity) {
+            buffer = ByteBuffer.allocateDirect(capacity * RECORD).order(ByteOrder.nativeOrder());
+        }
+
+        @Override
+        public int left(int node) {
+            return buffer.getInt(node * RECORD + LEFT);
+        }
+
+        @Override
+        public int right(int node) {
+            return buffer.getInt(node * RECORD + RIGHT);
+        }
+
+        @Override
+        public int key(int node) {
+            return buffer.getInt(node * RECORD + KEY);
+        }
+
+        @Override
+        public int height(int node) {
+            return buffer.getInt(node * RECORD + HEIGHT);
+        }
+
+        @Override
+        public void setLeft(int node, int value) {
+            buffer.putInt(node * RECORD + LEFT, value);
+        }
+
+        @Override
+        public void setRight(int node, int value) {
+            buffer.putInt(node * RECORD + RIGHT, value);
+        }
+
+        @Override
+        public void setKey(int node, int value) {
+            buffer.putInt(node * RECORD + KEY, value);
+        }
+
+        @Override
+        public void setHeight(int node, int value) {
+            buffer.putInt(node * RECORD + HEIGHT, value);
+        }
+
+        @Override
+        public int capacity() {
+            return buffer.capacity() / RECORD;
+        }
+
+        @Override
+        protected void grow(int minCapacity) {
+            int capacity = newCapacity(capacity(), minCapacity, Integer.MAX_VALUE / RECORD);
+            ByteBuffer grown = ByteBuffer.allocateDirect(capacity * RECORD).order(ByteOrder.nativeOrder());
+            buffer.clear();
+            grown.put(buffer);
+            grown.clear();
+            buffer = grown;
+        }
+    }
+}
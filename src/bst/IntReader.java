@@ -0,0 +1,156 @@
+package bst;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Reads whitespace separated decimal integers, like the ones in
+ * integers.txt, straight from the bytes of a channel.
+ *
+ * The input is read through one large direct buffer and parsed byte by
+ * byte, so no String or Integer is created per value.  Unlike Scanner it
+ * does not stop quietly at the first token which is not an int, it throws
+ * a NumberFormatException telling where the bad token is.
+ */
+public final class IntReader {
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private IntReader() {
+    }
+
+    /**
+     * Reads all the integers from input and passes them to the sink in the
+     * order they appear.  An integer is an optional sign followed by
+     * decimal digits, integers are separated by ASCII whitespace.
+     *
+     * @param input the channel to read from, it is not closed
+     * @param sink receives every integer read
+     * @return the number of integers read
+     * @throws IOException if reading from the channel fails
+     * @throws NumberFormatException if a token is not an int
+     */
+    public static long read(ReadableByteChannel input, IntConsumer sink) throws IOException {
+        return read(input, sink, ByteBuffer.allocateDirect(BUFFER_SIZE));
+    }
+
+    /**
+     * Reads all the integers from input like read(input, sink), reading
+     * through the given buffer instead of allocating one.
+     *
+     * @param input the channel to read from, it is not closed
+     * @param sink receives every integer read
+     * @param buffer the buffer to read into, its contents are overwritten
+     * @return the number of integers read
+     * @throws IOException if reading from the channel fails
+     * @throws NumberFormatException if a token is not an int
+     */
+    public static long read(ReadableByteChannel input, IntConsumer sink, ByteBuffer buffer) throws IOException {
+        if (buffer == null || buffer.capacity() == 0)
+            throw new IllegalArgumentException("A buffer with room is required");
+        long count = 0;
+        long offset = 0;        // stream offset of the start of the buffer
+        long tokenStart = -1;   // stream offset of the current token, -1 between tokens
+        boolean negative = false;
+        boolean digits = false;
+        long value = 0;
+
+        while (true) {
+            buffer.clear();
+            int n = input.read(buffer);
+            if (n < 0)
+                break;
+
+            // a token may continue into the next buffer, so the parser state
+            // is kept across reads
+            for (int i = 0; i < n; i++) {
+                byte b = buffer.get(i);
+                if (b >= '0' && b <= '9') {
+                    if (tokenStart < 0)
+                        tokenStart = offset + i;
+                    value = value * 10 + (b - '0');
+                    if (value > 1L + Integer.MAX_VALUE)
+                        throw outOfRange(tokenStart);
+                    digits = true;
+                } else if (isWhitespace(b)) {
+                    if (tokenStart >= 0) {
+                        sink.accept(toInt(value, negative, digits, tokenStart));
+                        count++;
+                        tokenStart = -1;
+                        negative = false;
+                        digits = false;
+                        value = 0;
+                    }
+                } else if ((b == '-' || b == '+') && tokenStart < 0) {
+                    tokenStart = offset + i;
+                    negative = (b == '-');
+                } else {
+                    throw new NumberFormatException("Malformed integer: unexpected character '" + (char) (b & 0xff)
+                            + "' at byte " + (offset + i));
+                }
+            }
+            offset += n;
+        }
+
+        // the last token may not be followed by whitespace
+        if (tokenStart >= 0) {
+            sink.accept(toInt(value, negative, digits, tokenStart));
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Reads all the integers from input into an array, in the order they
+     * appear.
+     *
+     * @param input the channel to read from, it is not closed
+     * @return the integers read
+     * @throws IOException if reading from the channel fails
+     * @throws NumberFormatException if a token is not an int
+     */
+    public static int[] readAll(ReadableByteChannel input) throws IOException {
+        IntArrayBuilder values = new IntArrayBuilder();
+        read(input, values);
+        return values.toArray();
+    }
+
+    /**
+     * Collects ints in a growing array.
+     */
+    private static class IntArrayBuilder implements IntConsumer {
+        private int[] values = new int[1024];
+        private int size;
+
+        @Override
+        public void accept(int value) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, size + (size >> 1));
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    private static int toInt(long value, boolean negative, boolean digits, long tokenStart) {
+        if (!digits)
+            throw new NumberFormatException("Malformed integer: sign without digits at byte " + tokenStart);
+        if (negative)
+            return (int) -value;
+        if (value > Integer.MAX_VALUE)
+            throw outOfRange(tokenStart);
+        return (int) value;
+    }
+
+    private static NumberFormatException outOfRange(long tokenStart) {
+        return new NumberFormatException("Integer out of range at byte " + tokenStart);
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f' || b == 0x0b;
+    }
+}
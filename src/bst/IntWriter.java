@@ -0,0 +1,150 @@
+package bst;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes integers as decimal ASCII text to a channel.
+ *
+ * The digits are formatted straight into one reusable byte buffer which is
+ * written to the channel in large chunks, so writing a value creates no
+ * String and needs no charset encoding.
+ */
+public class IntWriter implements Closeable, Flushable {
+    private static final int BUFFER_SIZE = 1 << 20;
+    /** The longest int, "-2147483648". */
+    private static final int MAX_INT_LENGTH = 11;
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    private final WritableByteChannel channel;
+    private final byte[] bytes = new byte[BUFFER_SIZE];
+    private final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    private int position;
+
+    /**
+     * Creates a writer to the given channel.
+     *
+     * @param channel the channel receiving the text
+     */
+    public IntWriter(WritableByteChannel channel) {
+        if (channel == null)
+            throw new IllegalArgumentException("Channel is required");
+        this.channel = channel;
+    }
+
+    /**
+     * Writes the decimal representation of value.
+     *
+     * @param value the value to write
+     * @throws IOException if writing to the channel fails
+     */
+    public void writeInt(int value) throws IOException {
+        if (BUFFER_SIZE - position < MAX_INT_LENGTH)
+            flushBuffer();
+
+        // work on the negative value so that Integer.MIN_VALUE fits
+        int q = value;
+        if (q < 0)
+            bytes[position++] = '-';
+        else
+            q = -q;
+
+        int end = position + digitCount(q);
+        int i = end;
+        do {
+            int next = q / 10;
+            bytes[--i] = (byte) ('0' + (next * 10 - q));
+            q = next;
+        } while (q != 0);
+        position = end;
+    }
+
+    /**
+     * Writes one ASCII character.
+     *
+     * @param c the character to write
+     * @throws IOException if writing to the channel fails
+     */
+    public void writeChar(char c) throws IOException {
+        if (c > 0x7f)
+            throw new IllegalArgumentException("Not an ASCII character: " + c);
+        if (position == BUFFER_SIZE)
+            flushBuffer();
+        bytes[position++] = (byte) c;
+    }
+
+    /**
+     * Writes a string made of ASCII characters.
+     *
+     * @param text the text to write
+     * @throws IOException if writing to the channel fails
+     */
+    public void write(String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            writeChar(text.charAt(i));
+        }
+    }
+
+    /**
+     * Writes the platform line separator, like BufferedWriter.newLine().
+     *
+     * @throws IOException if writing to the channel fails
+     */
+    public void newLine() throws IOException {
+        if (BUFFER_SIZE - position < LINE_SEPARATOR.length)
+            flushBuffer();
+        for (byte b : LINE_SEPARATOR) {
+            bytes[position++] = b;
+        }
+    }
+
+    /**
+     * Writes the buffered text to the channel.
+     *
+     * @throws IOException if writing to the channel fails
+     */
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+    }
+
+    /**
+     * Writes the buffered text and closes the channel.
+     *
+     * @throws IOException if writing to or closing the channel fails
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.clear().limit(position);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        position = 0;
+    }
+
+    /**
+     * Returns the number of decimal digits of a value which is zero or
+     * negative.
+     */
+    private static int digitCount(int negative) {
+        int bound = -10;
+        for (int digits = 1; digits < 10; digits++) {
+            if (negative > bound)
+                return digits;
+            bound *= 10;
+        }
+        return 10;
+    }
+}
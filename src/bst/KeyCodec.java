@@ -0,0 +1,77 @@
+package bst;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Converts the keys of a BST to and from bytes, for the tree snapshots.
+ *
+ * @param <T> the type of the keys
+ */
+public interface KeyCodec<T> {
+    /**
+     * Writes a key.
+     *
+     * @param output where the key is written
+     * @param key the key, never null
+     * @throws IOException if writing fails
+     */
+    void write(DataOutput output, T key) throws IOException;
+
+    /**
+     * Reads a key written by write().
+     *
+     * @param input where the key is read from
+     * @return the key
+     * @throws IOException if reading fails
+     */
+    T read(DataInput input) throws IOException;
+
+    /** Integers as 4 bytes. */
+    KeyCodec<Integer> INTEGER = new KeyCodec<Integer>() {
+        @Override
+        public void write(DataOutput output, Integer key) throws IOException {
+            output.writeInt(key);
+        }
+
+        @Override
+        public Integer read(DataInput input) throws IOException {
+            return input.readInt();
+        }
+    };
+
+    /** Longs as 8 bytes. */
+    KeyCodec<Long> LONG = new KeyCodec<Long>() {
+        @Override
+        public void write(DataOutput output, Long key) throws IOException {
+            output.writeLong(key);
+        }
+
+        @Override
+        public Long read(DataInput input) throws IOException {
+            return input.readLong();
+        }
+    };
+
+    /** Strings as their UTF-8 length followed by their UTF-8 bytes. */
+    KeyCodec<String> STRING = new KeyCodec<String>() {
+        @Override
+        public void write(DataOutput output, String key) throws IOException {
+            byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+
+        @Override
+        public String read(DataInput input) throws IOException {
+            int length = input.readInt();
+            if (length < 0)
+                throw new IOException("Invalid string length " + length);
+            byte[] bytes = new byte[length];
+            input.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+}
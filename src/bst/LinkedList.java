@@ -0,0 +1,711 @@
+package bst;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A linked list implementation which does not implement the List interface
+ * since it only provides a limited subset of the methods.
+ * 
+ * It implements Iterable in order to be used in foreach statements.
+ *
+ * The list is unrolled: each node holds a chunk of up to CHUNK_SIZE
+ * elements in an array, so the per element overhead is a slot of an
+ * array instead of a whole node, and iterating reads the elements of a
+ * chunk next to each other.  A chunk may have free slots at its front, so
+ * removing an element shifts the shorter side of its chunk.  Removing merges a chunk which is less than
+ * half full with a neighbor when they fit in one chunk.
+ *
+ * get, insert and remove by index start from the head, the tail or the
+ * node found by the previous of them, whichever is closest, and skip whole
+ * chunks from there.  Accessing indexes next to each other in a row thus
+ * costs O(1) per access instead of a walk from the end of the list.
+ *
+ * @param <E> list element type
+ */
+public class LinkedList<E> implements Iterable<E> {
+
+	/** The number of elements a node holds. */
+	private static final int CHUNK_SIZE = 32;
+	/** Lists shorter than this are not worth sorting in parallel. */
+	private static final int PARALLEL_SORT_THRESHOLD = 1 << 13;
+
+	public Node<E> head;
+	public Node<E> tail;
+	private int size;
+	/**
+	 * The node found by the last access by index, or null, and the index in
+	 * the list of its first element.  Changes by index keep it up to date.
+	 */
+	private Node<E> finger;
+	private int fingerIndex;
+
+	public LinkedList() {
+		size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		return new PainterIterator();
+	}
+
+	/**
+	 * Returns a spliterator over the elements in list order.  It splits by
+	 * skipping whole nodes to the middle of its elements, so a parallel
+	 * stream works on the nodes of the list instead of copies of them.
+	 */
+	@Override
+	public Spliterator<E> spliterator() {
+		return new NodeSpliterator<E>(head, 0, size);
+	}
+
+	/**
+	 * Returns a sequential stream of the elements in list order.
+	 */
+	public Stream<E> stream() {
+		return StreamSupport.stream(spliterator(), false);
+	}
+
+	/**
+	 * Returns a parallel stream of the elements in list order.
+	 */
+	public Stream<E> parallelStream() {
+		return StreamSupport.stream(spliterator(), true);
+	}
+
+	public void add(E e) {
+		if (head == null) {
+			head = tail = new Node<E>(null, null);
+		} else if (tail.start + tail.count == CHUNK_SIZE) {
+			Node<E> n = new Node<E>(null, tail);
+			tail.setNext(n);
+			tail = n;
+		}
+		tail.elements[tail.start + tail.count++] = e;
+		size++;
+	}
+
+	/**
+	 * Returns the element at index index.
+	 * @param index
+	 * @return the element
+	 * @throws IndexOutOfBoundsException if index is negative or not less than size()
+	 */
+	public E get(int index) {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+		Node<E> cur = locate(index);
+		return cur.element(index - fingerIndex);
+	}
+
+	/**
+	 * Inserts e at index index, moving the element there and those after it
+	 * one index up.  A full node is split in two halves first.
+	 * @param index
+	 * @param e the element to insert
+	 * @throws IndexOutOfBoundsException if index is negative or greater than size()
+	 */
+	public void insert(int index, E e) {
+		if (index < 0 || index > size)
+			throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+		if (index == size) {
+			add(e);
+			return;
+		}
+
+		Node<E> cur = locate(index);
+		index -= fingerIndex;
+		if (cur.count == CHUNK_SIZE) {
+			// a full node starts at 0, its upper half moves to a new node
+			int half = CHUNK_SIZE / 2;
+			Node<E> upper = new Node<E>(cur.next(), cur);
+			System.arraycopy(cur.elements, half, upper.elements, 0, CHUNK_SIZE - half);
+			Arrays.fill(cur.elements, half, CHUNK_SIZE, null);
+			upper.count = CHUNK_SIZE - half;
+			cur.count = half;
+			if (cur.next() == null)
+				tail = upper;
+			else
+				cur.next().setPrev(upper);
+			cur.setNext(upper);
+			if (index > half) {
+				index -= half;
+				cur = finger = upper;
+				fingerIndex += half;
+			}
+		}
+
+		// open a gap from the shorter side, unless only the front is free
+		if (cur.start > 0 && (index < cur.count / 2 || cur.start + cur.count == CHUNK_SIZE)) {
+			System.arraycopy(cur.elements, cur.start, cur.elements, cur.start - 1, index);
+			cur.start--;
+		} else {
+			System.arraycopy(cur.elements, cur.start + index, cur.elements, cur.start + index + 1,
+					cur.count - index);
+		}
+		cur.elements[cur.start + index] = e;
+		cur.count++;
+		size++;
+	}
+
+	/**
+	 * Removes element at index index.  The nodes before it are skipped
+	 * whole, from the head, the tail or the last node accessed by index,
+	 * whichever is closer to index.
+	 * @param index
+	 * @return the removed element or null if no element was removed
+	 */
+	public E remove(int index) {
+		if (index < 0 || index >= size)
+			return null;
+
+		Node<E> cur = locate(index);
+		index -= fingerIndex;
+
+		E removed = cur.element(index);
+		// close the gap from the shorter side, the front of a node may be free
+		if (index < cur.count / 2) {
+			System.arraycopy(cur.elements, cur.start, cur.elements, cur.start + 1, index);
+			cur.elements[cur.start++] = null;
+		} else {
+			System.arraycopy(cur.elements, cur.start + index + 1, cur.elements, cur.start + index,
+					cur.count - index - 1);
+			cur.elements[cur.start + cur.count - 1] = null;
+		}
+		cur.count--;
+		size--;
+		refill(cur);
+		return removed;
+	}
+
+	/**
+	 * Returns the node holding the element at index index, which is in
+	 * range, and makes it the finger.  The walk starts from the head, the
+	 * tail or the finger, whichever is closest to index.
+	 */
+	private Node<E> locate(int index) {
+		Node<E> cur;
+		int first;
+		if (index < size / 2) {
+			cur = head;
+			first = 0;
+		} else {
+			cur = tail;
+			first = size - tail.count;
+		}
+		if (finger != null && Math.abs(index - fingerIndex) < Math.min(index, size - index)) {
+			cur = finger;
+			first = fingerIndex;
+		}
+
+		while (index < first) {
+			cur = cur.prev();
+			first -= cur.count;
+		}
+		while (index >= first + cur.count) {
+			first += cur.count;
+			cur = cur.next();
+		}
+		finger = cur;
+		fingerIndex = first;
+		return cur;
+	}
+
+	/**
+	 * Merges a node which lost an element and is less than half full with
+	 * a neighbor, if their elements fit in one node.  Then every two
+	 * neighbors hold more than a node's worth of elements, so the nodes
+	 * are half full on average.  Elements are not moved between nodes
+	 * otherwise, which would make every further removal move them again.
+	 * 
+	 * @param node the node which lost an element, it is the finger
+	 */
+	private void refill(Node<E> node) {
+		if (node.count >= CHUNK_SIZE / 2)
+			return;
+		Node<E> next = node.next();
+		Node<E> prev = node.prev();
+		if (node.count == 0) {
+			// the next node starts at the index the empty one did
+			finger = next;
+			unlink(node);
+		} else if (next != null && node.count + next.count <= CHUNK_SIZE) {
+			append(node, next);
+			unlink(next);
+		} else if (prev != null && prev.count + node.count <= CHUNK_SIZE) {
+			finger = prev;
+			fingerIndex -= prev.count;
+			append(prev, node);
+			unlink(node);
+		}
+	}
+
+	/**
+	 * Appends the elements of from to the elements of to, which has room
+	 * for them once its elements are moved to the front.
+	 */
+	private static <T> void append(Node<T> to, Node<T> from) {
+		if (to.start + to.count + from.count > CHUNK_SIZE) {
+			System.arraycopy(to.elements, to.start, to.elements, 0, to.count);
+			Arrays.fill(to.elements, Math.max(to.count, to.start), to.start + to.count, null);
+			to.start = 0;
+		}
+		System.arraycopy(from.elements, from.start, to.elements, to.start + to.count, from.count);
+		to.count += from.count;
+	}
+
+	/**
+	 * Removes a node from the chain of nodes.
+	 */
+	private void unlink(Node<E> node) {
+		if (node.prev() == null)
+			head = node.next();
+		else
+			node.prev().setNext(node.next());
+		if (node.next() == null)
+			tail = node.prev();
+		else
+			node.next().setPrev(node.prev());
+		node.setNext(null);
+		node.setPrev(null);
+	}
+
+	/**
+	 * Sorts the list in place with a stable merge sort, so equal elements
+	 * keep their original order.  Every chunk is sorted on its own, then
+	 * runs of chunks in order are merged pairwise, the merged elements
+	 * being packed into the chunks the merge has emptied.  No array is
+	 * allocated and at most two nodes, and the sorted list is made of full
+	 * chunks.  Chunks which follow each other in order form one run
+	 * already, so a sorted list is checked but not copied.
+	 * 
+	 * @param comparator defines the order of the elements
+	 */
+	public void sort(Comparator<? super E> comparator) {
+		if (head != null)
+			relink(new ChunkSorter<E>(comparator).sort(head));
+	}
+
+	/**
+	 * Sorts the list in place like sort(), splitting large lists into
+	 * sublists which are sorted in parallel on the common fork-join pool
+	 * and then merged.  Every sublist and every merge may allocate up to
+	 * two nodes.
+	 * 
+	 * @param comparator defines the order of the elements
+	 */
+	public void parallelSort(Comparator<? super E> comparator) {
+		if (size < PARALLEL_SORT_THRESHOLD) {
+			sort(comparator);
+		} else {
+			int nodes = 0;
+			for (Node<E> cur = head; cur != null; cur = cur.next()) {
+				nodes++;
+			}
+			relink(ForkJoinPool.commonPool().invoke(new SortTask<E>(head, nodes, comparator)));
+		}
+	}
+
+	/**
+	 * Makes first the head of the list and restores the prev links and the
+	 * tail after the next links were rearranged.  The finger is dropped,
+	 * the elements moved.
+	 * 
+	 * @param first the first node of the list
+	 */
+	private void relink(Node<E> first) {
+		head = first;
+		Node<E> prev = null;
+		for (Node<E> cur = first; cur != null; cur = cur.next()) {
+			cur.setPrev(prev);
+			prev = cur;
+		}
+		tail = prev;
+		finger = null;
+	}
+
+	/**
+	 * Cuts the chain after count nodes.
+	 * 
+	 * @param first the first node of the chain, may be null
+	 * @param count the number of nodes to keep
+	 * @return the first node after the cut or null
+	 */
+	private static <T> Node<T> cut(Node<T> first, int count) {
+		for (int i = 1; first != null && i < count; i++) {
+			first = first.next();
+		}
+		if (first == null)
+			return null;
+		Node<T> rest = first.next();
+		first.setNext(null);
+		return rest;
+	}
+
+	/**
+	 * Stable merge sort of a chain of nodes linked by next, the prev links
+	 * are not maintained.  A chunk emptied by a merge becomes a spare which
+	 * receives merged elements.  The merged elements never need more chunks
+	 * than the ones they came from, except while both chunks being read
+	 * are partly consumed, so a sorter allocates at most two chunks.
+	 */
+	private static class ChunkSorter<T> {
+		private final Comparator<? super T> comparator;
+		/** The emptied chunks, linked by next. */
+		private Node<T> spares;
+		/** The first and the last node of the chain being merged into. */
+		private Node<T> first;
+		private Node<T> last;
+
+		ChunkSorter(Comparator<? super T> comparator) {
+			this.comparator = comparator;
+		}
+
+		/**
+		 * Sorts every chunk of the chain, then merges the runs of chunks
+		 * pairwise, pass after pass, until one run is left.
+		 * 
+		 * @param chain the first node of the chain
+		 * @return the first node of the sorted chain
+		 */
+		Node<T> sort(Node<T> chain) {
+			for (Node<T> cur = chain; cur != null; cur = cur.next()) {
+				sortChunk(cur);
+			}
+			while (true) {
+				first = last = null;
+				int runs = 0;
+				Node<T> remaining = chain;
+				while (remaining != null) {
+					Node<T> left = remaining;
+					Node<T> right = cutRun(left);
+					remaining = cutRun(right);
+					if (right == null) {
+						// an odd run out keeps its nodes
+						while (left != null) {
+							Node<T> next = left.next();
+							append(left);
+							left = next;
+						}
+					} else {
+						mergeRuns(left, right);
+					}
+					runs++;
+				}
+				if (runs == 1)
+					return first;
+				chain = first;
+			}
+		}
+
+		/**
+		 * Merges two sorted chains.
+		 * 
+		 * @return the first node of the merged chain
+		 */
+		Node<T> merge(Node<T> left, Node<T> right) {
+			first = last = null;
+			mergeRuns(left, right);
+			return first;
+		}
+
+		/**
+		 * Binary insertion sort of the elements of a chunk, an element goes
+		 * after the equal ones before it.
+		 */
+		private void sortChunk(Node<T> node) {
+			Object[] elements = node.elements;
+			for (int i = 1; i < node.count; i++) {
+				T element = node.element(i);
+				int low = 0;
+				int high = i;
+				while (low < high) {
+					int middle = (low + high) >>> 1;
+					if (comparator.compare(element, node.element(middle)) < 0)
+						high = middle;
+					else
+						low = middle + 1;
+				}
+				System.arraycopy(elements, node.start + low, elements, node.start + low + 1, i - low);
+				elements[node.start + low] = element;
+			}
+		}
+
+		/**
+		 * Cuts the chain after its first run, the chunks in which no element
+		 * is less than the one before it.
+		 * 
+		 * @param run the first node of the chain, may be null
+		 * @return the first node after the run or null
+		 */
+		private Node<T> cutRun(Node<T> run) {
+			if (run == null)
+				return null;
+			Node<T> next = run.next();
+			while (next != null && comparator.compare(next.element(0), run.element(run.count - 1)) >= 0) {
+				run = next;
+				next = run.next();
+			}
+			run.setNext(null);
+			return next;
+		}
+
+		/**
+		 * Merges two sorted chains and appends the result, packed into full
+		 * chunks, to the chain being built.  On equal elements the left one
+		 * goes first, which keeps the sort stable.  The chunks read are
+		 * spares once they are empty.
+		 */
+		private void mergeRuns(Node<T> left, Node<T> right) {
+			int l = 0;
+			int r = 0;
+			Node<T> out = null;
+			while (left != null || right != null) {
+				T element;
+				if (right == null || (left != null && comparator.compare(right.element(r), left.element(l)) >= 0)) {
+					element = left.element(l);
+					if (++l == left.count) {
+						Node<T> empty = left;
+						left = left.next();
+						l = 0;
+						spare(empty);
+					}
+				} else {
+					element = right.element(r);
+					if (++r == right.count) {
+						Node<T> empty = right;
+						right = right.next();
+						r = 0;
+						spare(empty);
+					}
+				}
+				if (out == null || out.count == CHUNK_SIZE) {
+					out = take();
+					append(out);
+				}
+				out.elements[out.count++] = element;
+			}
+			// the slots after the last element may hold stale ones
+			Arrays.fill(out.elements, out.count, CHUNK_SIZE, null);
+		}
+
+		private void spare(Node<T> node) {
+			node.setNext(spares);
+			spares = node;
+		}
+
+		/**
+		 * Returns an empty chunk, a spare if there is one.
+		 */
+		private Node<T> take() {
+			Node<T> node = spares;
+			if (node == null)
+				return new Node<T>(null, null);
+			spares = node.next();
+			node.start = 0;
+			node.count = 0;
+			return node;
+		}
+
+		private void append(Node<T> node) {
+			node.setNext(null);
+			if (last == null)
+				first = node;
+			else
+				last.setNext(node);
+			last = node;
+		}
+	}
+
+	/**
+	 * Sorts a chain of nodes by sorting its two halves in parallel and
+	 * merging them.  Short chains are sorted sequentially.
+	 */
+	private static class SortTask<T> extends RecursiveTask<Node<T>> {
+		private static final long serialVersionUID = 1L;
+
+		private final Node<T> first;
+		private final int nodes;
+		private final Comparator<? super T> comparator;
+
+		SortTask(Node<T> first, int nodes, Comparator<? super T> comparator) {
+			this.first = first;
+			this.nodes = nodes;
+			this.comparator = comparator;
+		}
+
+		@Override
+		protected Node<T> compute() {
+			if (nodes < PARALLEL_SORT_THRESHOLD / CHUNK_SIZE)
+				return new ChunkSorter<T>(comparator).sort(first);
+
+			int half = nodes / 2;
+			Node<T> second = cut(first, half);
+			SortTask<T> left = new SortTask<T>(first, half, comparator);
+			left.fork();
+			Node<T> right = new SortTask<T>(second, nodes - half, comparator).compute();
+			return new ChunkSorter<T>(comparator).merge(left.join(), right);
+		}
+	}
+
+	private class PainterIterator implements Iterator<E> {
+
+		/**
+		 * Node whose element will be returned by subsequent call to next
+		 */
+		private Node<E> cur = head;
+		/**
+		 * Index of that element in the node
+		 */
+		private int index;
+
+		public boolean hasNext() {
+
+			if (cur == null) {
+				return false;
+			}
+			return true;
+		}
+
+		@Override
+		public E next() {
+			if (hasNext() != false) {
+				E tmp = cur.element(index++);
+				if (index == cur.count) {
+					cur = cur.next();
+					index = 0;
+				}
+				return tmp;
+			}
+			else
+				// this is what the documentation of Iterator.next() states
+			    throw new NoSuchElementException();
+		}
+	}
+
+	/**
+	 * Spliterator over count elements starting at an index of a node.
+	 */
+	private static class NodeSpliterator<T> implements Spliterator<T> {
+		private Node<T> current;
+		private int index;
+		private int remaining;
+
+		NodeSpliterator(Node<T> first, int index, int count) {
+			current = first;
+			this.index = index;
+			remaining = count;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super T> action) {
+			if (remaining == 0)
+				return false;
+			T element = current.element(index++);
+			if (index == current.count) {
+				current = current.next();
+				index = 0;
+			}
+			remaining--;
+			action.accept(element);
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super T> action) {
+			Node<T> node = current;
+			int i = index;
+			for (int left = remaining; left > 0; left--) {
+				action.accept(node.element(i++));
+				if (i == node.count) {
+					node = node.next();
+					i = 0;
+				}
+			}
+			current = node;
+			index = i;
+			remaining = 0;
+		}
+
+		/**
+		 * Gives the first half of the elements to a new spliterator.
+		 */
+		@Override
+		public Spliterator<T> trySplit() {
+			if (remaining < 2)
+				return null;
+			int half = remaining >>> 1;
+			Spliterator<T> prefix = new NodeSpliterator<T>(current, index, half);
+			// skip whole nodes up to the node holding the middle element
+			int skip = index + half;
+			while (skip >= current.count) {
+				skip -= current.count;
+				current = current.next();
+			}
+			index = skip;
+			remaining -= half;
+			return prefix;
+		}
+
+		@Override
+		public long estimateSize() {
+			return remaining;
+		}
+
+		@Override
+		public int characteristics() {
+			return ORDERED | SIZED | SUBSIZED;
+		}
+	}
+
+	private static class Node<T> {
+		/** The elements are elements[start] to elements[start + count - 1]. */
+		private final Object[] elements = new Object[CHUNK_SIZE];
+		private int start;
+		private int count;
+		private Node<T> next;
+		private Node<T> prev;
+
+		public Node(Node<T> nextVal, Node<T> prevVal) {
+			next = nextVal;
+			prev = prevVal;
+		}
+
+		public Node<T> next() {
+			return next;
+		}
+
+		public Node<T> prev() {
+			return prev;
+		}
+
+		@SuppressWarnings("unchecked")
+		public T element(int index) {
+			return (T) elements[start + index];
+		}
+
+		public Node<T> setNext(Node<T> nextval) {
+			return next = nextval;
+		}
+
+		public Node<T> setPrev(Node<T> prevVal) {
+			return prev = prevVal;
+		}
+	}
+}
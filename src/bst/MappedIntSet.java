@@ -0,0 +1,169 @@
+package bst;
+
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * A read-only set of ints served straight from a memory-mapped IntBST
+ * snapshot file.  Opening it only maps the file and checks its header,
+ * whatever the number of values, and the operating system pages the
+ * values in as they are used.
+ *
+ * The values of a snapshot are sorted, so a lookup is a binary search
+ * taking O(log n) like a descent of the tree, and scans read the values
+ * in sequence.  One mapping holds at most about 500 million values.
+ * The set is immutable and safe to use from several threads.
+ */
+public final class MappedIntSet {
+    private final IntBuffer values;
+    private final BST.Balancing balancing;
+
+    private MappedIntSet(IntBuffer values, BST.Balancing balancing) {
+        this.values = values;
+        this.balancing = balancing;
+    }
+
+    /**
+     * Maps a snapshot file written by IntBST.writeSnapshot().
+     *
+     * @param file the snapshot file
+     * @return the set of the values of the snapshot
+     * @throws IOException if the file cannot be mapped or it is not an
+     *         IntBST snapshot
+     */
+    public static MappedIntSet open(Path file) throws IOException {
+        // the mapping stays valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length > Integer.MAX_VALUE)
+                throw new IOException("Tree snapshot is too large to map: " + file);
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            SnapshotFormat.Header snapshot = SnapshotFormat.getHeader(map, SnapshotFormat.INT_KEYS);
+            if (SnapshotFormat.HEADER_SIZE + snapshot.count * Integer.BYTES > length)
+                throw new IOException("Tree snapshot is truncated: " + file);
+
+            IntBuffer values = map.slice().asIntBuffer();
+            values.limit((int) snapshot.count);
+            return new MappedIntSet(values.slice(), snapshot.balancing);
+        }
+    }
+
+    /**
+     * Returns the balancing policy of the tree the snapshot was taken
+     * from, which IntBST.readSnapshot() restores.
+     *
+     * @return the balancing policy
+     */
+    public BST.Balancing getBalancing() {
+        return balancing;
+    }
+
+    /**
+     * Returns the number of values in the set.
+     *
+     * @return the number of values
+     */
+    public int size() {
+        return values.limit();
+    }
+
+    /**
+     * Returns true if the set contains the value.
+     *
+     * @param value the value to look for
+     * @return true if the value is in the set
+     */
+    public boolean contains(int value) {
+        int index = rank(value);
+        return index < size() && values.get(index) == value;
+    }
+
+    /**
+     * Returns the number of values smaller than value, which is the index
+     * value has or would have in ascending order.
+     *
+     * @param value the value to rank
+     * @return the number of values smaller than value
+     */
+    public int rank(int value) {
+        int low = 0;
+        int high = size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values.get(middle) < value)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * Returns the value at the given index in ascending order.
+     *
+     * @param index the index of the value
+     * @return the value at index
+     * @throws IndexOutOfBoundsException if index is negative or not less than size()
+     */
+    public int get(int index) {
+        if (index < 0 || index >= size())
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size());
+        return values.get(index);
+    }
+
+    /**
+     * Returns the values in ascending order.
+     *
+     * @return an iterator over all the values
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new Scan(0, size());
+    }
+
+    /**
+     * Returns the values between lo and hi, both included, in ascending
+     * order.
+     *
+     * @param lo the lower bound of the range
+     * @param hi the upper bound of the range
+     * @return an iterator over the values in the range
+     */
+    public PrimitiveIterator.OfInt range(int lo, int hi) {
+        if (lo > hi)
+            return new Scan(0, 0);
+        int from = rank(lo);
+        int to = (hi == Integer.MAX_VALUE) ? size() : rank(hi + 1);
+        return new Scan(from, to);
+    }
+
+    /**
+     * Iterator over the values between two indexes.
+     */
+    private class Scan implements PrimitiveIterator.OfInt {
+        private int next;
+        private final int end;
+
+        Scan(int from, int to) {
+            next = from;
+            end = to;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < end;
+        }
+
+        @Override
+        public int nextInt() {
+            if (next >= end)
+                throw new NoSuchElementException();
+            return values.get(next++);
+        }
+    }
+}
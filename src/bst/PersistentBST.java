@@ -0,0 +1,448 @@
+package bst;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable AVL tree.  add and remove leave the tree unchanged and return
+ * a new version which copies only the nodes on the path to the change,
+ * O(log n) of them, and shares every other subtree with the old version.
+ * Keeping a version is a snapshot, it costs nothing and stays valid
+ * however the newer versions change.
+ *
+ * A version never changes after it was created, so any number of threads
+ * may read it without locking, while another thread derives new versions.
+ * To hand the current version to the readers, store it in a volatile field
+ * or an AtomicReference.
+ *
+ * Many changes in a row are made faster by a Transient, which changes the
+ * nodes it created itself in place instead of copying them again.
+ *
+ * The tree is a set: adding an element which is already in it returns the
+ * same version.
+ *
+ * @param <T> the element type
+ */
+public final class PersistentBST<T extends Comparable<T>> implements Iterable<T> {
+    /**
+     * Tree node.  The nodes of a version are never changed, only a node
+     * created by a live Transient is changed, by that transient.
+     */
+    private static final class Node<T> {
+        final T data;
+        Node<T> left;
+        Node<T> right;
+        int height;
+        int size;
+        /** The token of the transient which may change this node, or null. */
+        final Object edit;
+
+        Node(Object edit, T data, Node<T> left, Node<T> right) {
+            this.edit = edit;
+            this.data = data;
+            this.left = left;
+            this.right = right;
+            update();
+        }
+
+        void update() {
+            height = 1 + Math.max(height(left), height(right));
+            size = 1 + size(left) + size(right);
+        }
+    }
+
+    /** Final, so the nodes of a version are visible to every thread it is passed to. */
+    private final Node<T> root;
+
+    /**
+     * Creates an empty tree.
+     */
+    public PersistentBST() {
+        this(null);
+    }
+
+    private PersistentBST(Node<T> root) {
+        this.root = root;
+    }
+
+    /**
+     * Returns a version of this tree which contains data.
+     *
+     * @param data the element to add
+     * @return the new version, or this tree if it already contains data
+     */
+    public PersistentBST<T> add(T data) {
+        if (data == null)
+            throw new IllegalArgumentException("Cannot add nulls");
+        Node<T> added = insert(null, root, data);
+        return (added == root) ? this : new PersistentBST<T>(added);
+    }
+
+    /**
+     * Returns a version of this tree which does not contain data.
+     *
+     * @param data the element to remove
+     * @return the new version, or this tree if it does not contain data
+     */
+    public PersistentBST<T> remove(T data) {
+        if (data == null)
+            throw new IllegalArgumentException("Cannot remove nulls");
+        Node<T> removed = delete(null, root, data);
+        return (removed == root) ? this : new PersistentBST<T>(removed);
+    }
+
+    /**
+     * Returns true if the tree contains data.
+     *
+     * @param data the element to look for
+     * @return true if data is in the tree
+     */
+    public boolean contains(T data) {
+        return contains(root, data);
+    }
+
+    /**
+     * Returns the smallest element.
+     *
+     * @return the smallest element
+     * @throws NoSuchElementException if the tree is empty
+     */
+    public T min() {
+        if (root == null)
+            throw new NoSuchElementException("Tree is empty");
+        Node<T> here = root;
+        while (here.left != null) {
+            here = here.left;
+        }
+        return here.data;
+    }
+
+    /**
+     * Returns the largest element.
+     *
+     * @return the largest element
+     * @throws NoSuchElementException if the tree is empty
+     */
+    public T max() {
+        if (root == null)
+            throw new NoSuchElementException("Tree is empty");
+        Node<T> here = root;
+        while (here.right != null) {
+            here = here.right;
+        }
+        return here.data;
+    }
+
+    /**
+     * Returns the number of elements in the tree.
+     *
+     * @return the number of elements
+     */
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * Returns the height of the tree, the number of nodes on its longest
+     * path from the root.
+     *
+     * @return the height of the tree, 0 if it is empty
+     */
+    public int height() {
+        return height(root);
+    }
+
+    /**
+     * Returns a list containing the elements of this version in the
+     * specified traversal order.
+     *
+     * @param order the traversal order of the tree
+     * @return a list of the elements
+     */
+    public LinkedList<T> elements(BST.Traversal order) {
+        if (order == null)
+            throw new IllegalArgumentException("Traversal order is required");
+        LinkedList<T> list = new LinkedList<T>();
+        collect(root, order, list);
+        return list;
+    }
+
+    /**
+     * The tree is balanced, so the recursion is only as deep as its height.
+     */
+    private static <T> void collect(Node<T> node, BST.Traversal order, LinkedList<T> list) {
+        if (node == null)
+            return;
+        if (order == BST.Traversal.PRE_ORDER)
+            list.add(node.data);
+        collect(node.left, order, list);
+        if (order == BST.Traversal.IN_ORDER)
+            list.add(node.data);
+        collect(node.right, order, list);
+        if (order == BST.Traversal.POST_ORDER)
+            list.add(node.data);
+    }
+
+    /**
+     * Returns the elements of this version in ascending order.  The
+     * iterator never sees the changes made by newer versions.
+     *
+     * @return an iterator over the elements
+     */
+    @Override
+    public Iterator<T> iterator() {
+        final ArrayDeque<Node<T>> stack = new ArrayDeque<Node<T>>();
+        for (Node<T> node = root; node != null; node = node.left) {
+            stack.push(node);
+        }
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return !stack.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                if (stack.isEmpty())
+                    throw new NoSuchElementException();
+                Node<T> node = stack.pop();
+                for (Node<T> child = node.right; child != null; child = child.left) {
+                    stack.push(child);
+                }
+                return node.data;
+            }
+        };
+    }
+
+    /**
+     * Returns a transient tree starting with the elements of this version,
+     * to make many changes without copying the nodes for every one.  This
+     * version does not change.
+     *
+     * @return a new transient tree
+     */
+    public Transient<T> asTransient() {
+        return new Transient<T>(root);
+    }
+
+    /**
+     * A mutable tree for bulk changes, created by asTransient().  It copies
+     * a node of the version it started from the first time it changes it,
+     * and then changes the copy in place, so a batch of changes copies each
+     * node at most once.  persistent() turns it into a version and ends it.
+     *
+     * A transient must be used by one thread at a time.
+     *
+     * @param <T> the element type
+     */
+    public static final class Transient<T extends Comparable<T>> {
+        private Node<T> root;
+        /** Marks the nodes this transient created, null once it ended. */
+        private Object edit = new Object();
+
+        private Transient(Node<T> root) {
+            this.root = root;
+        }
+
+        /**
+         * Adds data to the tree.
+         *
+         * @param data the element to add
+         * @return true if the tree did not contain data
+         */
+        public boolean add(T data) {
+            if (data == null)
+                throw new IllegalArgumentException("Cannot add nulls");
+            int before = PersistentBST.size(root);
+            root = insert(editToken(), root, data);
+            return PersistentBST.size(root) != before;
+        }
+
+        /**
+         * Removes data from the tree.
+         *
+         * @param data the element to remove
+         * @return true if the tree contained data
+         */
+        public boolean remove(T data) {
+            if (data == null)
+                throw new IllegalArgumentException("Cannot remove nulls");
+            int before = PersistentBST.size(root);
+            root = delete(editToken(), root, data);
+            return PersistentBST.size(root) != before;
+        }
+
+        /**
+         * Returns true if the tree contains data.
+         *
+         * @param data the element to look for
+         * @return true if data is in the tree
+         */
+        public boolean contains(T data) {
+            editToken();
+            return PersistentBST.contains(root, data);
+        }
+
+        /**
+         * Returns the number of elements in the tree.
+         *
+         * @return the number of elements
+         */
+        public int size() {
+            editToken();
+            return PersistentBST.size(root);
+        }
+
+        /**
+         * Returns the tree as an immutable version.  The transient cannot be
+         * used afterwards, since it would change the nodes of that version.
+         *
+         * @return the version holding the elements of this tree
+         */
+        public PersistentBST<T> persistent() {
+            editToken();
+            edit = null;
+            return new PersistentBST<T>(root);
+        }
+
+        private Object editToken() {
+            if (edit == null)
+                throw new IllegalStateException("Transient tree used after persistent()");
+            return edit;
+        }
+    }
+
+    private static <T extends Comparable<T>> boolean contains(Node<T> here, T data) {
+        if (data == null)
+            throw new IllegalArgumentException("Cannot look for nulls");
+        while (here != null) {
+            int cmp = data.compareTo(here.data);
+            if (cmp == 0)
+                return true;
+            here = (cmp < 0) ? here.left : here.right;
+        }
+        return false;
+    }
+
+    /**
+     * Adds data to the subtree.
+     *
+     * @param edit the token of the transient making the change, null for a
+     *        new version
+     * @return the new root of the subtree, node itself if it already
+     *         contains data
+     */
+    private static <T extends Comparable<T>> Node<T> insert(Object edit, Node<T> node, T data) {
+        if (node == null)
+            return new Node<T>(edit, data, null, null);
+
+        // a child changed in place by a transient is the same node, so the
+        // sizes tell whether the subtree changed
+        int cmp = data.compareTo(node.data);
+        if (cmp < 0) {
+            int before = size(node.left);
+            Node<T> left = insert(edit, node.left, data);
+            return (size(left) == before) ? node : balance(edit, with(edit, node, left, node.right));
+        } else if (cmp > 0) {
+            int before = size(node.right);
+            Node<T> right = insert(edit, node.right, data);
+            return (size(right) == before) ? node : balance(edit, with(edit, node, node.left, right));
+        }
+        return node;
+    }
+
+    /**
+     * Removes data from the subtree.
+     *
+     * @return the new root of the subtree, node itself if it does not
+     *         contain data
+     */
+    private static <T extends Comparable<T>> Node<T> delete(Object edit, Node<T> node, T data) {
+        if (node == null)
+            return null;
+
+        int cmp = data.compareTo(node.data);
+        if (cmp < 0) {
+            int before = size(node.left);
+            Node<T> left = delete(edit, node.left, data);
+            return (size(left) == before) ? node : balance(edit, with(edit, node, left, node.right));
+        } else if (cmp > 0) {
+            int before = size(node.right);
+            Node<T> right = delete(edit, node.right, data);
+            return (size(right) == before) ? node : balance(edit, with(edit, node, node.left, right));
+        }
+
+        if (node.left == null)
+            return node.right;
+        if (node.right == null)
+            return node.left;
+        // the successor takes the place of the node, the element of a node
+        // never changes so it is a new node
+        Node<T> successor = node.right;
+        while (successor.left != null) {
+            successor = successor.left;
+        }
+        return balance(edit, new Node<T>(edit, successor.data, node.left, deleteMin(edit, node.right)));
+    }
+
+    private static <T> Node<T> deleteMin(Object edit, Node<T> node) {
+        if (node.left == null)
+            return node.right;
+        return balance(edit, with(edit, node, deleteMin(edit, node.left), node.right));
+    }
+
+    /**
+     * Returns node with the given children: node itself changed in place if
+     * the transient making the change created it, a copy otherwise.
+     */
+    private static <T> Node<T> with(Object edit, Node<T> node, Node<T> left, Node<T> right) {
+        if (edit != null && node.edit == edit) {
+            node.left = left;
+            node.right = right;
+            node.update();
+            return node;
+        }
+        return new Node<T>(edit, node.data, left, right);
+    }
+
+    /**
+     * Restores the AVL balance of a node whose subtrees differ in height by
+     * at most two, like BST does.
+     *
+     * @return the new root of the subtree
+     */
+    private static <T> Node<T> balance(Object edit, Node<T> node) {
+        int diff = height(node.left) - height(node.right);
+        if (diff > 1) {
+            // left heavy, a left-right case needs a rotation of the child first
+            if (height(node.left.left) < height(node.left.right))
+                node = with(edit, node, rotateLeft(edit, node.left), node.right);
+            return rotateRight(edit, node);
+        } else if (diff < -1) {
+            // right heavy, a right-left case needs a rotation of the child first
+            if (height(node.right.right) < height(node.right.left))
+                node = with(edit, node, node.left, rotateRight(edit, node.right));
+            return rotateLeft(edit, node);
+        }
+        return node;
+    }
+
+    private static <T> Node<T> rotateRight(Object edit, Node<T> node) {
+        Node<T> pivot = node.left;
+        return with(edit, pivot, pivot.left, with(edit, node, pivot.right, node.right));
+    }
+
+    private static <T> Node<T> rotateLeft(Object edit, Node<T> node) {
+        Node<T> pivot = node.right;
+        return with(edit, pivot, with(edit, node, node.left, pivot.left), pivot.right);
+    }
+
+    private static int height(Node<?> node) {
+        return (node == null) ? 0 : node.height;
+    }
+
+    private static int size(Node<?> node) {
+        return (node == null) ? 0 : node.size;
+    }
+}
@@ -0,0 +1,100 @@
+package bst;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The header of the binary tree snapshots written by BST and IntBST.
+ *
+ * A snapshot is a 16 byte header followed by the distinct keys of the tree
+ * in ascending order, so it is loaded by linking the keys into a tree of
+ * minimal height, in linear time and without comparing them.  All the
+ * numbers are big-endian.  The header holds:
+ * <ul>
+ * <li>the magic number "BSTS"</li>
+ * <li>the format version, a short</li>
+ * <li>the key type: INT_KEYS for 4 byte ints, CODEC_KEYS for keys written
+ * by a KeyCodec, each followed by its count in a multiset tree</li>
+ * <li>the flags: the balancing policy and the multiset mode</li>
+ * <li>the number of keys, a long</li>
+ * </ul>
+ */
+final class SnapshotFormat {
+    static final int MAGIC = 0x42535453; // "BSTS"
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 16;
+
+    static final byte INT_KEYS = 1;
+    static final byte CODEC_KEYS = 2;
+
+    private static final int FLAG_AVL = 1;
+    private static final int FLAG_MULTISET = 2;
+    private static final int FLAG_SPLAY = 4;
+
+    /**
+     * The contents of a snapshot header.
+     */
+    static final class Header {
+        final BST.Balancing balancing;
+        final boolean multiset;
+        final long count;
+
+        Header(BST.Balancing balancing, boolean multiset, long count) {
+            this.balancing = balancing;
+            this.multiset = multiset;
+            this.count = count;
+        }
+    }
+
+    private SnapshotFormat() {
+    }
+
+    /**
+     * Writes a header at the position of buffer.
+     *
+     * @param buffer the buffer receiving the header
+     * @param keyType INT_KEYS or CODEC_KEYS
+     * @param balancing the balancing policy of the tree
+     * @param multiset true for a multiset tree
+     * @param count the number of keys which follow
+     */
+    static void putHeader(ByteBuffer buffer, byte keyType, BST.Balancing balancing, boolean multiset, long count) {
+        int flags = (balancing == BST.Balancing.AVL ? FLAG_AVL : 0) | (balancing == BST.Balancing.SPLAY ? FLAG_SPLAY : 0)
+                | (multiset ? FLAG_MULTISET : 0);
+        buffer.putInt(MAGIC)
+                .putShort(VERSION)
+                .put(keyType)
+                .put((byte) flags)
+                .putLong(count);
+    }
+
+    /**
+     * Reads and checks a header at the position of buffer.
+     *
+     * @param buffer the buffer holding the header
+     * @param keyType the key type the caller can read
+     * @return the header
+     * @throws IOException if the buffer does not hold a header of a
+     *         supported version and of the expected key type
+     */
+    static Header getHeader(ByteBuffer buffer, byte keyType) throws IOException {
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC)
+            throw new IOException("Not a tree snapshot");
+        short version = buffer.getShort();
+        if (version != VERSION)
+            throw new IOException("Unsupported tree snapshot version " + version);
+        byte type = buffer.get();
+        if (type != keyType)
+            throw new IOException("Tree snapshot has key type " + type + ", expected " + keyType);
+        int flags = buffer.get();
+        long count = buffer.getLong();
+        if (count < 0 || count > Integer.MAX_VALUE)
+            throw new IOException("Invalid key count in tree snapshot: " + count);
+        BST.Balancing balancing = BST.Balancing.NONE;
+        if ((flags & FLAG_AVL) != 0)
+            balancing = BST.Balancing.AVL;
+        else if ((flags & FLAG_SPLAY) != 0)
+            balancing = BST.Balancing.SPLAY;
+        return new Header(balancing, (flags & FLAG_MULTISET) != 0, count);
+    }
+}
@@ -0,0 +1,33 @@
+package bst;
+
+import java.util.Comparator;
+
+/**
+ * An extension of LinkedList which can be sorted.  The elements are sorted 
+ * in the order provided by Comparable, equal elements keep their order.
+ *
+ * @param <T> list element type
+ */
+public class SortableList<T extends Comparable<T>> extends LinkedList<T> {
+
+    /**
+     * Sorts the list in place in ascending order.
+     */
+    public void sort() {
+        sort(Comparator.<T>naturalOrder());
+    }
+
+    /**
+     * Returns the contents of the list in a sorted list.  All the elements
+     * are kept, including duplicates.  Large lists are sorted in parallel.
+     * @return the sorted list
+     */
+    public LinkedList<T> getSortedList() {
+        LinkedList<T> sorted = new LinkedList<T>();
+        for (T data : this) {
+            sorted.add(data);
+        }
+        sorted.parallelSort(Comparator.<T>naturalOrder());
+        return sorted;
+    }
+}
@@ -0,0 +1,82 @@
+package bst;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class ConcurrentBSTTest {
+    private static final int THREADS = 8;
+    private static final int KEYS = 512;
+    private static final int OPERATIONS = 200000;
+
+    @Test
+    public void removeLeavesNoRoutingNodeWithOneChild() throws Exception {
+        for (int round = 0; round < 10; round++) {
+            final ConcurrentBST<Integer> tree = new ConcurrentBST<Integer>();
+            Random random = new Random(round);
+            for (int i = 0; i < KEYS; i++) {
+                tree.add(random.nextInt(KEYS));
+            }
+
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+            try {
+                List<Future<Void>> writers = new ArrayList<Future<Void>>();
+                for (int t = 0; t < THREADS; t++) {
+                    final long seed = round * THREADS + t;
+                    writers.add(executor.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() {
+                            Random random = new Random(seed);
+                            for (int i = 0; i < OPERATIONS; i++) {
+                                Integer key = random.nextInt(KEYS);
+                                if (random.nextBoolean())
+                                    tree.add(key);
+                                else
+                                    tree.remove(key);
+                            }
+                            return null;
+                        }
+                    }));
+                }
+                for (Future<Void> writer : writers) {
+                    writer.get();
+                }
+            } finally {
+                executor.shutdown();
+            }
+
+            assertEquals(0, tree.strayRoutingNodes());
+            TreeSet<Integer> elements = new TreeSet<Integer>();
+            for (Integer element : tree) {
+                elements.add(element);
+            }
+            assertEquals(elements.size(), tree.size());
+        }
+    }
+
+    @Test
+    public void removeUnlinksRoutingNodesUpTheTree() {
+        ConcurrentBST<Integer> tree = new ConcurrentBST<Integer>();
+        for (int key : new int[] { 8, 4, 12, 2, 6, 1, 3 }) {
+            tree.add(key);
+        }
+        // 4 and 2 have two children, so they stay as routing nodes
+        tree.remove(4);
+        tree.remove(2);
+        assertEquals(0, tree.strayRoutingNodes());
+        tree.remove(1);
+        tree.remove(6);
+        tree.remove(3);
+        assertEquals(0, tree.strayRoutingNodes());
+        assertEquals(2, tree.size());
+    }
+}